@@ -1,6 +1,8 @@
 package iapi;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import com.opencsv.*;
 
@@ -12,8 +14,13 @@ public class CSVUtils {
         return headerList.toArray(new String[0]);
     }
 
+    /**
+     * Writes the chunk to a .tmp file and renames it into place, so a reader watching the folder
+     * never sees a partially written CSV.
+     */
     public static void writeChunkToFile(String filePath, String[] header, List<String[]> chunk) throws IOException {
-        try (Writer writer = new BufferedWriter(new FileWriter(filePath)); // Use BufferedWriter for efficiency
+        File tmpFile = new File(filePath + ".tmp");
+        try (Writer writer = new BufferedWriter(new FileWriter(tmpFile)); // Use BufferedWriter for efficiency
              CSVWriter csvWriter = new CSVWriter(writer)) {
 
             // Write header
@@ -29,7 +36,9 @@ public class CSVUtils {
                 csvWriter.writeNext(modifiedRow);
             }
         } catch (IOException e) {
+            tmpFile.delete();
             throw new IOException("Error writing chunk to file: " + filePath, e);
         }
+        Files.move(tmpFile.toPath(), new File(filePath).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 }
@@ -1,13 +1,30 @@
 package iapi;
 
 import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetCompactor;
+import iapi.convert_data.ParquetProfile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.ParquetWriterUtil;
 import iapi.merge_data.FileMerger;
+import iapi.merge_data.InputWatcher;
 import iapi.send_data.KafkaFileProducer;
-import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.conf.HadoopParquetConfiguration;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
 
@@ -20,6 +37,7 @@ public class Main {
         final int DEFAULT_MAX_FILE_SIZE_MB = 300;
         final String DEFAULT_BOOTSTRAP_SERVER = "pkc-lq8v7.eu-central-1.aws.confluent.cloud:9092";
         final String DEFAULT_TOPIC = "kafka-test";
+        final int DEFAULT_QUEUE_CAPACITY = ParquetWriterOptions.DEFAULT_QUEUE_CAPACITY;
 
         // Parse command-line arguments
         Map<String, String> argMap = parseArguments(args);
@@ -29,27 +47,135 @@ public class Main {
         String bootstrapServer = argMap.getOrDefault("server", DEFAULT_BOOTSTRAP_SERVER);
         String topic = argMap.getOrDefault("topic", DEFAULT_TOPIC);
         int maxFileSizeMB = parseMaxFileSize(argMap.getOrDefault("size", String.valueOf(DEFAULT_MAX_FILE_SIZE_MB)));
+        boolean alignRowGroups = Boolean.parseBoolean(argMap.getOrDefault("align-row-groups", "false"));
+        ParquetProfile profile = parseProfile(argMap.getOrDefault("profile", ParquetProfile.UNCOMPRESSED.name()));
+        int writerCount = parsePositiveInt("writers", argMap.getOrDefault("writers", "1"), 1);
+        ParquetWriterOptions.Routing routing = parseRouting(argMap.getOrDefault("routing", "file"));
+        boolean partitioned = Boolean.parseBoolean(argMap.getOrDefault("partitioned", "false"));
+        int maxOpenPartitions = parsePositiveInt("max-open-partitions", argMap.getOrDefault("max-open-partitions",
+                String.valueOf(ParquetWriterOptions.DEFAULT_MAX_OPEN_PARTITIONS)), ParquetWriterOptions.DEFAULT_MAX_OPEN_PARTITIONS);
+        int defaultBudgetMB = (int) (Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024)); // Half the heap
+        int memoryBudgetMB = parsePositiveInt("memory-budget-mb", argMap.getOrDefault("memory-budget-mb",
+                String.valueOf(defaultBudgetMB)), defaultBudgetMB);
+        List<String> bloomFilterColumns = parseBloomFilterColumns(argMap.getOrDefault("bloom-filters",
+                String.join(",", ParquetWriterOptions.DEFAULT_BLOOM_FILTER_COLUMNS)));
+        int pageRowCountLimit = parsePositiveInt("page-rows", argMap.getOrDefault("page-rows",
+                String.valueOf(ParquetWriterOptions.DEFAULT_PAGE_ROW_COUNT_LIMIT)), ParquetWriterOptions.DEFAULT_PAGE_ROW_COUNT_LIMIT);
+        boolean timestampMicros = argMap.getOrDefault("timestamp", "double").equalsIgnoreCase("micros");
+        boolean asyncFlush = Boolean.parseBoolean(argMap.getOrDefault("async-flush", "false"));
+        boolean avroWritePath = argMap.getOrDefault("write-path", "direct").equalsIgnoreCase("avro");
+        ParquetWriterOptions.ArrowMode arrowMode = parseArrowMode(argMap.getOrDefault("arrow", "off"));
+        Path arrowSocket = argMap.containsKey("arrow-socket") ? Path.of(argMap.get("arrow-socket")) : null;
+        boolean hadoopFileSystem = argMap.getOrDefault("io", "nio").equalsIgnoreCase("hadoop");
+        boolean compact = Boolean.parseBoolean(argMap.getOrDefault("compact", "false"));
+        int compactMBPerSecond = parsePositiveInt("compact-mb-per-sec", argMap.getOrDefault("compact-mb-per-sec",
+                String.valueOf(ParquetCompactor.DEFAULT_BYTES_PER_SECOND / (1024 * 1024))), (int) (ParquetCompactor.DEFAULT_BYTES_PER_SECOND / (1024 * 1024)));
+        boolean checkpointing = Boolean.parseBoolean(argMap.getOrDefault("checkpoint", "true"));
+        int parserThreads = parsePositiveInt("parsers", argMap.getOrDefault("parsers",
+                String.valueOf(Runtime.getRuntime().availableProcessors())), Runtime.getRuntime().availableProcessors());
+        boolean orderedIngest = Boolean.parseBoolean(argMap.getOrDefault("ordered", "true"));
+        boolean watchInput = argMap.getOrDefault("ingest", "scan").equalsIgnoreCase("watch");
+        int settleMillis = parsePositiveInt("settle-ms", argMap.getOrDefault("settle-ms",
+                String.valueOf(InputWatcher.DEFAULT_SETTLE_MILLIS)), (int) InputWatcher.DEFAULT_SETTLE_MILLIS);
+        Path archiveFolder = argMap.containsKey("archive") ? Path.of(argMap.get("archive")) : null;
+        boolean tail = Boolean.parseBoolean(argMap.getOrDefault("tail", "false"));
+        int tailIntervalMillis = parsePositiveInt("tail-interval-ms", argMap.getOrDefault("tail-interval-ms", "1000"), 1000);
+        // Tailed rows only leave once their file is published, so tail mode closes files after a minute by default
+        int maxFileAgeSec = tail || argMap.containsKey("max-file-age-sec")
+                ? parsePositiveInt("max-file-age-sec", argMap.getOrDefault("max-file-age-sec", "60"), 60) : 0;
+        int queueCapacity = parsePositiveInt("queue", argMap.getOrDefault("queue", String.valueOf(DEFAULT_QUEUE_CAPACITY)), DEFAULT_QUEUE_CAPACITY);
 
         // Print configuration
         System.out.println("Starting the data merging and conversion process.");
         System.out.printf("Input folder: %s%n", inputFolder);
+        System.out.printf("Input discovery: %s%n", tail ? "tail appended lines every " + tailIntervalMillis + " ms"
+                : watchInput ? "watch service, files ready after " + settleMillis + " ms without changes" : "scan every 5 s");
         System.out.printf("Output folder: %s%n", outputFolder);
-        System.out.printf("Max file size: %d MB%n", maxFileSizeMB);
+        // Defaults that differ from the original behaviour say how to turn them off
+        System.out.printf("Checkpoint processed inputs: %b%s%n", checkpointing,
+                checkpointing && !argMap.containsKey("checkpoint") ? " (default; --checkpoint=false to turn off)" : "");
+        System.out.printf("Move processed inputs to: %s%n", archiveFolder != null ? archiveFolder : "(left in place)");
+        System.out.printf("Parser threads: %d, write files in input order: %b%s%n", parserThreads, orderedIngest,
+                orderedIngest && !argMap.containsKey("ordered") ? " (default; --ordered=false to turn off)" : "");
+        System.out.printf("Max file size: %d MB, max file age: %s%n", maxFileSizeMB, maxFileAgeSec > 0 ? maxFileAgeSec + " s" : "none");
+        System.out.printf("Align row groups to file size: %b%n", alignRowGroups);
+        System.out.printf("Parquet profile: %s%n", profile);
+        System.out.printf("Parquet writers: %d (routing by %s)%n", writerCount, routing);
+        System.out.printf("Partitioned output: %b (max %d open partitions per writer)%n", partitioned, maxOpenPartitions);
+        System.out.printf("Writer queue capacity: %d batches%n", queueCapacity);
+        System.out.printf("Row group memory budget: %d MB, async row group flush: %b%n", memoryBudgetMB, asyncFlush);
+        System.out.printf("Bloom filters: %s%s%n", bloomFilterColumns,
+                argMap.containsKey("bloom-filters") ? "" : " (default; --bloom-filters=none to turn off)");
+        System.out.printf("Max rows per page: %d%s%n", pageRowCountLimit,
+                argMap.containsKey("page-rows") ? "" : " (default; --page-rows=20000 for parquet-mr's default)");
+        System.out.printf("Timestamp: %s%n", timestampMicros ? "int64 timestamp-micros, delta encoded" : "double epoch seconds");
+        System.out.printf("Output I/O: %s%n", hadoopFileSystem ? "Hadoop FileSystem" : "NIO");
+        System.out.printf("Row write path: %s%n", avroWritePath ? "Avro view + AvroWriteSupport" : "direct to column writers");
+        System.out.printf("Arrow IPC output: %s%s%n", arrowMode, arrowSocket != null ? ", stream on " + arrowSocket : "");
+        System.out.printf("Compaction of small files: %s%n", compact ? "on, up to " + compactMBPerSecond + " MB/s" : "off");
         System.out.printf("Kafka Bootstrap Server: %s%n", bootstrapServer);
         System.out.printf("Kafka Topic: %s%n", topic);
 
-        // Initialize Hadoop configuration
-        Configuration conf = HadoopConfig.getHadoopConfiguration();
+        // Only the Hadoop output path needs a Hadoop configuration; loading one is slow on the Pi
+        ParquetConfiguration conf = hadoopFileSystem
+                ? new HadoopParquetConfiguration(HadoopConfig.getHadoopConfiguration())
+                : new PlainParquetConfiguration();
 
         try {
             // Initialize FileMerger
-            FileMerger merger = new FileMerger(inputFolder, maxFileSizeMB * 1024L * 1024L, outputFolder, conf);
+            FileMerger merger = new FileMerger(inputFolder, outputFolder, conf, new ParquetWriterOptions()
+                    .withTargetFileSize(maxFileSizeMB * 1024L * 1024L)
+                    .withMaxFileAgeMillis(maxFileAgeSec * 1000L)
+                    .withAlignedRowGroups(alignRowGroups)
+                    .withQueueCapacity(queueCapacity)
+                    .withWriterCount(writerCount)
+                    .withRouting(routing)
+                    .withProfile(profile)
+                    .withPartitioning(partitioned)
+                    .withMaxOpenPartitions(maxOpenPartitions)
+                    .withMemoryBudget(memoryBudgetMB * 1024L * 1024L)
+                    .withBloomFilterColumns(bloomFilterColumns)
+                    .withPageRowCountLimit(pageRowCountLimit)
+                    .withTimestampMicros(timestampMicros)
+                    .withHadoopFileSystem(hadoopFileSystem)
+                    .withAsyncFlush(asyncFlush)
+                    .withAvroWritePath(avroWritePath)
+                    .withArrowOutput(arrowMode)
+                    .withArrowSocket(arrowSocket)
+                    .withCheckpointing(checkpointing)
+                    .withArchiveFolder(archiveFolder)
+                    .withParserThreads(parserThreads)
+                    .withOrderedIngest(orderedIngest));
+
+            ParquetCompactor compactor = compact ? new ParquetCompactor(
+                    new OutputManifest(ParquetWriterUtil.outputDirectory(outputFolder).toPath()), maxFileSizeMB * 1024L * 1024L,
+                    compactMBPerSecond * 1024L * 1024L, ParquetCompactor.DEFAULT_HOLD_MILLIS) : null;
+
+            // Files only appear in the manifest once complete, so the sender can run alongside the merger.
+            // Compaction runs on the same low-priority thread, so it never merges a file while it is being sent.
+            ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "output-sender");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            sender.scheduleWithFixedDelay(() -> {
+                if (compactor != null) {
+                    try {
+                        compactor.compact();
+                    } catch (IOException e) {
+                        System.err.println("Compaction failed: " + e.getMessage());
+                    }
+                }
+                sendFiles(outputFolder, bootstrapServer, topic, compactor);
+            }, 5, 5, TimeUnit.SECONDS);
 
             // Add shutdown hook for graceful shutdown
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 System.out.println("Shutdown signal received. Stopping application...");
                 isRunning = false; // Stop the loop
                 try {
+                    sender.shutdown();
                     merger.stop(); // Gracefully stop the FileMerger
                     System.out.println("Application stopped gracefully.");
                 } catch (Exception e) {
@@ -59,11 +185,15 @@ public class Main {
             }));
 
             // Continuously monitor and process files
+            if (tail) {
+                tailAndMerge(merger, tailIntervalMillis);
+            } else if (watchInput) {
+                watchAndMerge(merger, inputFolder, settleMillis);
+            }
             while (isRunning) {
                 merger.mergeFilesConcurrently(); // Process files
                 System.out.println("Waiting for new files...");
                 try {
-                    sendFiles(outputFolder, bootstrapServer, topic);
                     Thread.sleep(5000); // Pause before checking again
                 } catch (InterruptedException e) {
                     System.out.println("Thread interrupted. Exiting...");
@@ -77,6 +207,43 @@ public class Main {
         }
     }
 
+    /**
+     * Reads the lines appended to the input files until the application stops.
+     */
+    private static void tailAndMerge(FileMerger merger, long intervalMillis) {
+        while (isRunning) {
+            if (merger.tailFiles() == 0) {
+                try {
+                    Thread.sleep(intervalMillis); // Nothing new; wait for more lines
+                } catch (InterruptedException e) {
+                    System.out.println("Thread interrupted. Exiting...");
+                    isRunning = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges input files as the watch service reports them complete. Returns if the input folder
+     * cannot be watched, so the caller can fall back to scanning.
+     */
+    private static void watchAndMerge(FileMerger merger, String inputFolder, long settleMillis) {
+        try (InputWatcher watcher = new InputWatcher(Path.of(inputFolder), merger::isProcessed,
+                settleMillis, InputWatcher.DEFAULT_RECONCILE_MILLIS)) {
+            while (isRunning) {
+                List<Path> ready = watcher.take(1, TimeUnit.SECONDS);
+                if (!ready.isEmpty()) {
+                    merger.mergeFiles(ready.stream().map(Path::toFile).toList());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Watching the input folder failed, falling back to scanning: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println("Thread interrupted. Exiting...");
+            isRunning = false;
+        }
+    }
+
     /**
      * Parses command-line arguments into a key-value map.
      * Example input: --inputFolder=/path/to/input --outputFolder=/path/to/output --maxFileSizeMB=200
@@ -110,29 +277,119 @@ public class Main {
         }
     }
 
-    public static void sendFiles(String outputPath, String bootstrapServers, String topic) {
-        System.out.println("Initializing KafkaFileProducer...");
-        KafkaFileProducer kafkaProducer = new KafkaFileProducer(bootstrapServers, topic);
+    /**
+     * Parses a positive integer option, falling back to the default if it is missing or invalid.
+     */
+    private static int parsePositiveInt(String name, String value, int defaultValue) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the default
+        }
+        System.err.printf("Invalid %s specified: %s. Using default value %d.%n", name, value, defaultValue);
+        return defaultValue;
+    }
 
-        System.out.printf("Scanning folder: %s for .parquet files...%n", outputPath);
-        File outputFolder = new File(outputPath).getParentFile();
+    /**
+     * Parses the writer routing policy (file, robot_id or round_robin).
+     */
+    private static ParquetWriterOptions.Routing parseRouting(String value) {
+        try {
+            return ParquetWriterOptions.Routing.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Invalid routing specified: %s. Using default value file.%n", value);
+            return ParquetWriterOptions.Routing.FILE;
+        }
+    }
 
-        if (!outputFolder.exists() || !outputFolder.isDirectory()) {
-            System.err.printf("Output path '%s' does not exist or is not a directory.%n", outputPath);
-            return;
+    private static ParquetWriterOptions.ArrowMode parseArrowMode(String value) {
+        try {
+            return ParquetWriterOptions.ArrowMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Invalid Arrow output mode specified: %s. Using default value off.%n", value);
+            return ParquetWriterOptions.ArrowMode.OFF;
         }
+    }
 
-        File[] files = outputFolder.listFiles((dir, name) -> name.endsWith(".parquet"));
-        if (files == null || files.length == 0) {
-            System.out.println("No .parquet files found to process.");
+    /**
+     * Parses the Parquet codec/encoding profile, e.g. zstd_3_bss.
+     */
+    private static ParquetProfile parseProfile(String value) {
+        try {
+            return ParquetProfile.fromName(value);
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Invalid profile specified: %s. Using default value %s. Valid profiles: %s%n",
+                    value, ParquetProfile.UNCOMPRESSED, Arrays.toString(ParquetProfile.values()));
+            return ParquetProfile.UNCOMPRESSED;
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of bloom filter columns; "none" turns bloom filters off.
+     */
+    private static List<String> parseBloomFilterColumns(String value) {
+        if (value.trim().equalsIgnoreCase("none")) {
+            return List.of();
+        }
+        List<String> columns = new ArrayList<>();
+        for (String column : value.split(",")) {
+            if (!column.isBlank()) {
+                columns.add(column.trim());
+            }
+        }
+        try {
+            new ParquetWriterOptions().withBloomFilterColumns(columns); // Validates the names
+            return columns;
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Invalid bloom filter columns specified: %s (%s). Using default value %s.%n",
+                    value, e.getMessage(), ParquetWriterOptions.DEFAULT_BLOOM_FILTER_COLUMNS);
+            return ParquetWriterOptions.DEFAULT_BLOOM_FILTER_COLUMNS;
+        }
+    }
+
+    /**
+     * Sends the files in the output manifest that have not been sent yet, and marks each one sent in
+     * the manifest once Kafka took it, so a restart does not send it again. Files still being written
+     * are not in the manifest, so this is safe to run while the merger is writing.
+     *
+     * @param compactor The compactor of the output folder, or null. Small files it may still merge are held back.
+     */
+    public static void sendFiles(String outputPath, String bootstrapServers, String topic, ParquetCompactor compactor) {
+        File outputFolder = ParquetWriterUtil.outputDirectory(outputPath);
+        OutputManifest manifest = new OutputManifest(outputFolder.toPath());
+        List<OutputManifest.Entry> pending = new ArrayList<>();
+        try {
+            for (OutputManifest.Entry entry : manifest.read()) {
+                if (!entry.sent() && (compactor == null || !compactor.isPending(entry))) {
+                    pending.add(entry);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.printf("Cannot read the manifest in '%s': %s%n", outputFolder, e.getMessage());
+            return;
+        }
+        if (pending.isEmpty()) {
             return;
         }
 
-        System.out.printf("Found %d .parquet file(s) to send.%n", files.length);
-        for (File file : files) {
-            System.out.printf("Preparing to send file: %s (size: %d bytes)%n", file.getName(), file.length());
+        System.out.println("Initializing KafkaFileProducer...");
+        KafkaFileProducer kafkaProducer = new KafkaFileProducer(bootstrapServers, topic);
+
+        System.out.printf("Found %d new .parquet file(s) to send.%n", pending.size());
+        for (OutputManifest.Entry entry : pending) {
+            File file = new File(outputFolder, entry.path());
+            System.out.printf("Preparing to send file: %s (%d rows, %d bytes)%n", entry.path(), entry.rows(), entry.bytes());
             boolean isSent = kafkaProducer.sendFile(file.toPath());
             if (isSent) {
+                try {
+                    manifest.markSent(entry.path());
+                } catch (IOException e) {
+                    System.err.printf("Sent file %s, but could not record it; it is sent again after a restart: %s%n",
+                            file.getName(), e.getMessage());
+                }
                 System.out.printf("Successfully sent file: %s%n", file.getName());
             } else {
                 System.err.printf("Failed to send file: %s%n", file.getName());
@@ -0,0 +1,340 @@
+package iapi.convert_data;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Writes {@link RobotDataBatch}es as Arrow record batches, uncompressed, for consumers that work
+ * in Arrow anyway and want the data sooner than a finished Parquet file:
+ * <ul>
+ *     <li>Arrow IPC files ({@code <prefix><n>.arrow}, Feather v2) in the output directory, rolled
+ *     over at the target file size. Like the Parquet files they are written under an in-progress
+ *     name and renamed when complete. Being uncompressed, they can be memory-mapped by the reader
+ *     (e.g. {@code pyarrow.memory_map}) without copying.</li>
+ *     <li>An Arrow IPC stream on a Unix domain socket, if {@link ParquetWriterOptions#getArrowSocket()}
+ *     is set. Every connected client gets the schema and then each batch written after it connected.</li>
+ *     <li>In-process {@link #addListener listeners}, which are handed the vectors themselves.</li>
+ * </ul>
+ *
+ * Batches are converted and written to the file on the calling thread, under this object's lock,
+ * and encoded once for all socket clients. Each client is sent the stream by its own thread from a
+ * queue of up to {@value #CLIENT_QUEUE_MESSAGES} messages; a client that falls further behind is
+ * disconnected rather than holding up the writers or making data pile up in memory.
+ *
+ * When the Arrow files are the only output, the {@link RobotDataBatch#getSource() sources} of the
+ * rows in the open file are held in the {@link SourceTracker} until it is renamed into place, as
+ * {@link ParquetFileSeries} does for Parquet files.
+ */
+public class ArrowOutput implements Closeable {
+
+    private static final int CLIENT_QUEUE_MESSAGES = 16;
+
+    private final File directory;
+    private final String prefix;
+    private final long targetFileSizeBytes;
+    private final BufferAllocator allocator = new RootAllocator();
+    private final RobotDataArrowConverter converter;
+    private final List<Consumer<VectorSchemaRoot>> listeners = new CopyOnWriteArrayList<>();
+    private final List<StreamClient> clients = new ArrayList<>();
+    private final ServerSocketChannel server;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream(); // The stream messages of the last call
+    private final ArrowStreamWriter encoder; // Null without a socket
+    private final byte[] streamSchema; // Null without a socket
+    private final Path socketPath;
+    private final SourceTracker sources; // Null if sources are not tracked
+    private final Set<String> fileSources = new HashSet<>(); // Sources with rows in the open file
+
+    private FileChannel channel;
+    private ArrowFileWriter fileWriter;
+    private File currentFile;
+    private File inProgressFile;
+    private int fileIndex = 1;
+    private long rowsWritten;
+    private boolean closed;
+
+    /**
+     * @param directory Directory for the IPC files.
+     * @param prefix    Name prefix of the file series.
+     */
+    public ArrowOutput(File directory, String prefix, ParquetWriterOptions options) throws IOException {
+        this(directory, prefix, options, null);
+    }
+
+    /**
+     * @param sources Tracker that holds the sources of the open file's rows until it is published, or null.
+     */
+    ArrowOutput(File directory, String prefix, ParquetWriterOptions options, SourceTracker sources) throws IOException {
+        this.directory = directory;
+        this.sources = sources;
+        this.prefix = prefix;
+        this.targetFileSizeBytes = options.getTargetFileSizeBytes();
+        this.converter = new RobotDataArrowConverter(allocator, options.isTimestampMicros());
+        this.socketPath = options.getArrowSocket();
+        if (socketPath != null) {
+            Files.deleteIfExists(socketPath); // Left by an earlier run; binding fails otherwise
+            encoder = new ArrowStreamWriter(converter.getRoot(), null, encoded);
+            encoder.start();
+            streamSchema = encoded.toByteArray();
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            Thread acceptor = new Thread(this::acceptClients, "arrow-socket");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            System.out.println("Serving an Arrow IPC stream on " + socketPath);
+        } else {
+            encoder = null;
+            streamSchema = null;
+            server = null;
+        }
+    }
+
+    /**
+     * Adds a consumer that is called with the vectors of every batch. The root is only valid during
+     * the call and must not be modified or closed; copy (e.g. with {@code VectorSchemaRoot.slice})
+     * what has to be kept.
+     */
+    public void addListener(Consumer<VectorSchemaRoot> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void write(RobotDataBatch batch) throws IOException {
+        if (closed) {
+            throw new IOException("Arrow output is closed.");
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (fileWriter != null && channel.position() >= targetFileSizeBytes) {
+            closeFile();
+            fileIndex++;
+        }
+        if (fileWriter == null) {
+            openFile();
+        }
+        if (sources != null && batch.getSource() != null && fileSources.add(batch.getSource())) {
+            sources.acquire(batch.getSource());
+        }
+
+        converter.load(batch);
+        fileWriter.writeBatch();
+        if (!clients.isEmpty()) {
+            encoded.reset();
+            encoder.writeBatch();
+            byte[] message = encoded.toByteArray();
+            clients.removeIf(client -> !client.offer(message));
+        }
+        for (Consumer<VectorSchemaRoot> listener : listeners) {
+            listener.accept(converter.getRoot());
+        }
+        rowsWritten += batch.size();
+    }
+
+    private void openFile() throws IOException {
+        if (!directory.exists() && directory.mkdirs()) {
+            System.out.println("Created directory: " + directory.getAbsolutePath());
+        }
+        while (true) {
+            currentFile = new File(directory, prefix + fileIndex + ".arrow");
+            inProgressFile = OutputManifest.inProgressPath(currentFile.toPath()).toFile();
+            if (!currentFile.exists() && inProgressFile.createNewFile()) {
+                break;
+            }
+            fileIndex++;
+        }
+        channel = FileChannel.open(inProgressFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        fileWriter = new ArrowFileWriter(converter.getRoot(), null, channel);
+        fileWriter.start();
+        System.out.println("Initialized Arrow writer for file: " + currentFile.getPath());
+    }
+
+    /**
+     * Finishes the open file and renames it into place. If that fails, the sources of its rows fail.
+     */
+    private void closeFile() throws IOException {
+        try {
+            try {
+                fileWriter.end();
+                channel.force(true);
+            } finally {
+                fileWriter.close(); // Closes the channel
+                fileWriter = null;
+            }
+            Files.move(inProgressFile.toPath(), currentFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            if (sources != null) {
+                fileSources.forEach(sources::fail);
+            }
+            throw e;
+        } finally {
+            if (sources != null) {
+                fileSources.forEach(sources::release);
+            }
+            fileSources.clear();
+        }
+        System.out.println("Closed Arrow writer for file: " + currentFile.getPath());
+    }
+
+    private void acceptClients() {
+        while (true) {
+            SocketChannel socket;
+            try {
+                socket = server.accept();
+            } catch (AsynchronousCloseException e) {
+                return; // Closed by close()
+            } catch (IOException e) {
+                System.err.println("Arrow socket failed: " + e.getMessage());
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    closeQuietly(socket);
+                    return;
+                }
+                clients.add(new StreamClient(socket, streamSchema));
+                System.out.println("Arrow stream client connected.");
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing to do
+        }
+    }
+
+    public synchronized long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Finishes the open file and ends the streams of connected clients. Safe to call more than once.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (fileWriter != null) {
+                closeFile();
+            }
+        } finally {
+            if (encoder != null) {
+                encoded.reset();
+                encoder.end();
+                byte[] endOfStream = encoded.toByteArray();
+                for (StreamClient client : clients) {
+                    client.end(endOfStream);
+                }
+                encoder.close();
+            }
+            clients.clear();
+            if (server != null) {
+                server.close();
+                Files.deleteIfExists(socketPath);
+            }
+            converter.close();
+            allocator.close();
+        }
+    }
+
+    /**
+     * A socket client, sent its messages by its own thread.
+     */
+    private static final class StreamClient {
+
+        private static final byte[] END = new byte[0]; // Stops the sender
+
+        private final SocketChannel socket;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(CLIENT_QUEUE_MESSAGES);
+        private volatile boolean connected = true;
+
+        StreamClient(SocketChannel socket, byte[] schema) {
+            this.socket = socket;
+            queue.add(schema);
+            Thread sender = new Thread(this::send, "arrow-client");
+            sender.setDaemon(true);
+            sender.start();
+        }
+
+        /**
+         * Queues a message without waiting. A client whose queue is full is disconnected.
+         *
+         * @return Whether the client is still connected.
+         */
+        boolean offer(byte[] message) {
+            if (!connected) {
+                return false;
+            }
+            if (!queue.offer(message)) {
+                System.out.printf("Arrow stream client is %d messages behind; disconnecting it.%n", CLIENT_QUEUE_MESSAGES);
+                disconnect();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Queues the end of the stream, after which the sender closes the socket.
+         */
+        void end(byte[] endOfStream) {
+            if (!connected || !queue.offer(endOfStream) || !queue.offer(END)) {
+                disconnect();
+            }
+        }
+
+        private void send() {
+            try {
+                for (byte[] message = queue.take(); message != END; message = queue.take()) {
+                    ByteBuffer buffer = ByteBuffer.wrap(message);
+                    while (buffer.hasRemaining()) {
+                        socket.write(buffer);
+                    }
+                }
+            } catch (IOException e) {
+                if (connected) {
+                    System.out.println("Arrow stream client disconnected: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+            }
+        }
+
+        private void disconnect() {
+            connected = false;
+            closeQuietly(socket);
+        }
+    }
+}
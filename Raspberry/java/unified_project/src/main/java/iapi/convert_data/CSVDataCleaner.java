@@ -5,6 +5,9 @@ import iapi.convert_data.RobotData;
 import org.apache.commons.csv.CSVRecord;
 
 public class CSVDataCleaner {
+
+    private static final int TIMESTAMP = RobotDataLayout.position("Timestamp");
+
     public static RobotData cleanRecord(CSVRecord record) {
         return new RobotData(
                 DataValidator.parseInt(record.get("ID")),
@@ -30,4 +33,57 @@ public class CSVDataCleaner {
                 DataValidator.parseInt(record.get("Anomaly State"))
         );
     }
+
+    /**
+     * Converts the current row of a {@link CSVTokenizer} into the next row of {@code batch}. The row is
+     * only committed to the batch if every field is valid.
+     *
+     * @throws IllegalArgumentException if a value is invalid or an array does not have its fixed width.
+     */
+    public static void cleanRecord(CSVTokenizer tokenizer, ColumnBinding binding, RobotDataBatch batch) {
+        cleanRecord(tokenizer, binding, batch, false);
+    }
+
+    /**
+     * As {@link #cleanRecord(CSVTokenizer, ColumnBinding, RobotDataBatch)}, and with
+     * {@code timestampMicros} also rejects timestamps that {@link #toEpochMicros(double)} cannot
+     * convert without loss, so they are skipped here instead of failing the writer.
+     */
+    public static void cleanRecord(CSVTokenizer tokenizer, ColumnBinding binding, RobotDataBatch batch, boolean timestampMicros) {
+        binding.checkRow(tokenizer);
+        int row = batch.size();
+        for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+            switch (RobotDataLayout.type(pos)) {
+                case INT -> batch.setInt(pos, row, binding.intField(tokenizer, pos));
+                case DOUBLE -> batch.setDouble(pos, row, binding.doubleField(tokenizer, pos));
+                default -> {
+                    int width = RobotDataLayout.width(pos);
+                    int count = binding.arrayField(tokenizer, pos, batch.vectorColumn(pos), batch.vectorOffset(pos, row), width);
+                    if (count != width) {
+                        throw new IllegalArgumentException("Invalid array length for field "
+                                + RobotDataLayout.SCHEMA.getFields().get(pos).name() + ": expected " + width);
+                    }
+                }
+            }
+        }
+        if (timestampMicros) {
+            toEpochMicros(batch.doubleColumn(TIMESTAMP)[row]);
+        }
+        batch.commitRow();
+    }
+
+    /**
+     * Converts epoch seconds to epoch microseconds for the timestamp-micros schema. The conversion is
+     * exact for any timestamp with at most six decimals: the microseconds divided by 10^6 give back
+     * the same double.
+     *
+     * @throws IllegalArgumentException if the timestamp has sub-microsecond digits, which would be lost.
+     */
+    public static long toEpochMicros(double seconds) {
+        long micros = Math.round(seconds * 1_000_000);
+        if (micros / 1e6 != seconds) {
+            throw new IllegalArgumentException("Timestamp " + seconds + " cannot be stored in microseconds without loss");
+        }
+        return micros;
+    }
 }
@@ -0,0 +1,351 @@
+package iapi.convert_data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Byte-level CSV tokenizer that reads raw ASCII from a {@link ByteBuffer} and exposes field
+ * boundaries as offsets into the backing array, so numeric fields can be parsed without
+ * creating a String per field.
+ *
+ * Follows the subset of RFC 4180 that commons-csv's DEFAULT format accepts: quoted fields with
+ * doubled quotes, LF or CRLF line endings, surrounding spaces ignored and empty lines skipped.
+ * The first row is read as the header when the tokenizer is opened.
+ *
+ * A tokenizer opened with {@link #tail} reads a file that may still be growing: it starts at a byte
+ * offset and stops before a last row that has no line break yet, and {@link #offset()} tells where
+ * to continue next time.
+ */
+public final class CSVTokenizer implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private final ReadableByteChannel channel;
+    private final boolean completeRowsOnly;
+    private ByteBuffer buffer;
+    private long bufferOffset; // Input offset of buffer index 0
+    private boolean endOfInput;
+
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+    private int escapedFields;
+    private long rowNumber;
+
+    private final String[] header;
+
+    public CSVTokenizer(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ), DEFAULT_BUFFER_SIZE);
+    }
+
+    public CSVTokenizer(ReadableByteChannel channel, int bufferSize) throws IOException {
+        this(channel, bufferSize, false);
+        if (header == null) {
+            channel.close();
+            throw new IOException("Empty CSV file.");
+        }
+    }
+
+    private CSVTokenizer(ReadableByteChannel channel, int bufferSize, boolean completeRowsOnly) throws IOException {
+        this.channel = channel;
+        this.completeRowsOnly = completeRowsOnly;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip(); // Start empty, in read mode
+
+        if (!nextRow()) {
+            header = null;
+            return;
+        }
+        header = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            header[i] = fieldAsString(i);
+        }
+        rowNumber = 0;
+    }
+
+    /**
+     * Opens a file that may still be written to, for reading the complete rows from {@code offset}
+     * on. The header is read from the start of the file; an offset inside the header is ignored.
+     *
+     * @return The tokenizer, or null if the file does not have a complete header row yet.
+     */
+    public static CSVTokenizer tail(Path file, long offset) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        CSVTokenizer tokenizer;
+        try {
+            tokenizer = new CSVTokenizer(channel, DEFAULT_BUFFER_SIZE, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (tokenizer.header == null) {
+            channel.close();
+            return null;
+        }
+        if (offset > tokenizer.offset()) {
+            channel.position(offset);
+            tokenizer.buffer.clear().flip();
+            tokenizer.bufferOffset = offset;
+            tokenizer.endOfInput = false;
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Advances to the next non-empty row. Field offsets stay valid until the next call.
+     */
+    public boolean nextRow() throws IOException {
+        while (true) {
+            int rowEnd = tokenizeRow(buffer.position(), buffer.limit());
+            if (rowEnd >= 0) {
+                buffer.position(rowEnd);
+                if (isEmptyRow()) {
+                    continue;
+                }
+                rowNumber++;
+                return true;
+            }
+            if (endOfInput) {
+                if (!buffer.hasRemaining() || completeRowsOnly) {
+                    return false;
+                }
+                // Last row without a trailing line break
+                tokenizeRow(buffer.position(), buffer.limit(), true);
+                buffer.position(buffer.limit());
+                if (isEmptyRow()) {
+                    return false;
+                }
+                rowNumber++;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Tokenizes one row starting at {@code from}. Returns the offset just past the row's line break,
+     * or -1 if the row is not complete within {@code limit}. The buffer is only modified once the
+     * row is known to be complete, so an incomplete row can be rescanned after a refill.
+     */
+    private int tokenizeRow(int from, int limit) {
+        return tokenizeRow(from, limit, false);
+    }
+
+    private int tokenizeRow(int from, int limit, boolean atEnd) {
+        byte[] buf = buffer.array();
+        fieldCount = 0;
+        escapedFields = 0;
+        int i = from;
+
+        while (true) {
+            // Skip leading spaces of the field
+            while (i < limit && buf[i] == ' ') {
+                i++;
+            }
+            int start;
+            int end;
+
+            if (i < limit && buf[i] == QUOTE) {
+                start = i + 1;
+                i = start;
+                boolean escaped = false;
+                while (true) {
+                    if (i >= limit) {
+                        if (!atEnd) {
+                            return -1;
+                        }
+                        break; // Unterminated quote at end of input: take the rest as the field
+                    }
+                    if (buf[i] == QUOTE) {
+                        if (i + 1 >= limit && !atEnd) {
+                            return -1; // Cannot tell a closing quote from an escaped one yet
+                        }
+                        if (i + 1 < limit && buf[i + 1] == QUOTE) {
+                            escaped = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                end = Math.min(i, limit);
+                if (i < limit) {
+                    i++; // Closing quote
+                }
+                if (escaped) {
+                    escapedFields++;
+                    end = -end; // Marked for unescaping once the row is complete
+                }
+                // Ignore anything between the closing quote and the next delimiter
+                while (i < limit && buf[i] != COMMA && buf[i] != LF && buf[i] != CR) {
+                    i++;
+                }
+            } else {
+                start = i;
+                while (i < limit && buf[i] != COMMA && buf[i] != LF && buf[i] != CR) {
+                    i++;
+                }
+                end = i;
+                while (end > start && buf[end - 1] == ' ') {
+                    end--;
+                }
+            }
+
+            if (i >= limit) {
+                if (!atEnd) {
+                    return -1;
+                }
+                addField(start, end);
+                unescapeFields();
+                return limit;
+            }
+
+            addField(start, end);
+            byte b = buf[i];
+            if (b == COMMA) {
+                i++;
+                continue;
+            }
+            if (b == CR) {
+                if (i + 1 >= limit && !atEnd) {
+                    return -1;
+                }
+                i++;
+                if (i < limit && buf[i] == LF) {
+                    i++;
+                }
+            } else {
+                i++; // LF
+            }
+            unescapeFields();
+            return i;
+        }
+    }
+
+    /**
+     * Collapses doubled quotes in place for the fields of a complete row that contain them.
+     */
+    private void unescapeFields() {
+        if (escapedFields == 0) {
+            return;
+        }
+        byte[] buf = buffer.array();
+        for (int f = 0; f < fieldCount; f++) {
+            if (fieldEnds[f] >= 0) {
+                continue;
+            }
+            int end = -fieldEnds[f];
+            int write = fieldStarts[f];
+            for (int read = fieldStarts[f]; read < end; read++) {
+                buf[write++] = buf[read];
+                if (buf[read] == QUOTE) {
+                    read++; // Skip the second quote of the pair
+                }
+            }
+            fieldEnds[f] = write;
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private boolean isEmptyRow() {
+        return fieldCount == 1 && fieldStarts[0] == fieldEnds[0];
+    }
+
+    /**
+     * Moves the unread tail to the front of the buffer and reads more input, growing the buffer
+     * when a single row does not fit.
+     */
+    private void fill() throws IOException {
+        if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            bufferOffset += buffer.position();
+            buffer.compact();
+        }
+        // buffer is now in write mode
+        int read = channel.read(buffer);
+        if (read < 0) {
+            endOfInput = true;
+        }
+        buffer.flip();
+    }
+
+    public String[] header() {
+        return header.clone();
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int fieldStart(int field) {
+        checkField(field);
+        return fieldStarts[field];
+    }
+
+    public int fieldEnd(int field) {
+        checkField(field);
+        return fieldEnds[field];
+    }
+
+    /**
+     * Backing array that {@link #fieldStart(int)} and {@link #fieldEnd(int)} index into.
+     */
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    public String fieldAsString(int field) {
+        checkField(field);
+        return new String(buffer.array(), fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Number of the current data row, starting at 1 for the first row after the header.
+     */
+    public long rowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * @return The input offset just past the last row returned (or the header), i.e. where reading
+     * would continue.
+     */
+    public long offset() {
+        return bufferOffset + buffer.position();
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fieldCount) {
+            throw new IllegalArgumentException("Row " + rowNumber + " has " + fieldCount + " fields, field " + field + " requested");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,272 @@
+package iapi.convert_data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A small persistent map from string keys to long values, used to remember ingest progress across
+ * restarts: which inputs were processed and the last sequence number of each output file series.
+ *
+ * Every change is appended to {@value #LOG_NAME} and forced to disk before the call returns. Once
+ * the log holds more records than there are live keys (and at least {@link #MIN_SNAPSHOT_RECORDS}),
+ * the live keys are written to {@value #SNAPSHOT_NAME} and the log is truncated, so the files, like
+ * the in-memory map, stay proportional to the live keys. Opening the store loads the snapshot and
+ * replays the log; a record torn by a crash at the end of the log is ignored.
+ *
+ * Thread-safe.
+ */
+public class CheckpointStore implements AutoCloseable {
+
+    public static final String LOG_NAME = "_checkpoint.log";
+    public static final String SNAPSHOT_NAME = "_checkpoint.snapshot";
+    static final int MIN_SNAPSHOT_RECORDS = 1024;
+
+    private final Path directory; // Null for a store that is not persisted
+    private final Map<String, Long> values = new HashMap<>();
+    private FileChannel log;
+    private int logRecords;
+    private boolean closed;
+
+    /**
+     * Opens the store in the directory, loading what was checkpointed before.
+     */
+    public CheckpointStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_NAME);
+        if (Files.exists(snapshot)) {
+            replay(snapshot);
+        }
+        Path logFile = directory.resolve(LOG_NAME);
+        if (Files.exists(logFile)) {
+            logRecords = replay(logFile);
+        }
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.truncate(validLength(logFile)); // Drop a torn record so new ones start on a fresh line
+        log.position(log.size());
+        if (!values.isEmpty() || logRecords > 0) {
+            System.out.printf("Loaded checkpoint with %d entries (%d log records) from %s%n", values.size(), logRecords, directory);
+        }
+    }
+
+    private CheckpointStore() {
+        this.directory = null;
+    }
+
+    /**
+     * @return A store that only lives in memory, for runs without checkpointing.
+     */
+    public static CheckpointStore inMemory() {
+        return new CheckpointStore();
+    }
+
+    /**
+     * Applies the records of a log or snapshot file.
+     *
+     * @return The number of complete records.
+     */
+    private int replay(Path file) throws IOException {
+        int records = 0;
+        long validLength = validLength(file);
+        long position = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                position += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (position > validLength) {
+                    System.err.println("Ignoring incomplete last record in " + file);
+                    break;
+                }
+                apply(line, file, records + 1);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return The length of the file up to and including its last line break.
+     */
+    private static long validLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            while (length > 0) {
+                buffer.clear();
+                channel.read(buffer, length - 1);
+                if (buffer.get(0) == '\n') {
+                    break;
+                }
+                length--;
+            }
+            return length;
+        }
+    }
+
+    private void apply(String line, Path file, int lineNumber) throws IOException {
+        try {
+            if (line.startsWith("P ")) {
+                int space = line.indexOf(' ', 2);
+                values.put(line.substring(space + 1), Long.parseLong(line.substring(2, space)));
+                return;
+            } else if (line.startsWith("R ")) {
+                values.remove(line.substring(2));
+                return;
+            }
+        } catch (RuntimeException e) {
+            // Reported below
+        }
+        throw new IOException("Corrupt record " + lineNumber + " in " + file + ": " + line);
+    }
+
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    public synchronized long get(String key, long defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /**
+     * @return The keys that start with the prefix.
+     */
+    public synchronized List<String> keys(String prefix) {
+        List<String> keys = new ArrayList<>();
+        for (String key : values.keySet()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Sets the value of a key and makes the change durable.
+     *
+     * @throws IllegalArgumentException if the key contains a line break.
+     */
+    public synchronized void put(String key, long value) throws IOException {
+        if (key.indexOf('\n') >= 0 || key.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Checkpoint keys must not contain line breaks: " + key);
+        }
+        Long previous = values.get(key);
+        if (previous == null || previous != value) {
+            append("P " + value + " " + key + "\n", 1);
+            values.put(key, value);
+            snapshotIfDue();
+        }
+    }
+
+    public synchronized void remove(String key) throws IOException {
+        if (values.containsKey(key)) {
+            append("R " + key + "\n", 1);
+            values.remove(key);
+            snapshotIfDue();
+        }
+    }
+
+    /**
+     * Removes the keys that match the filter.
+     *
+     * @return The number of keys removed.
+     */
+    public synchronized int removeIf(Predicate<String> filter) throws IOException {
+        List<String> removed = new ArrayList<>();
+        for (String key : values.keySet()) {
+            if (filter.test(key)) {
+                removed.add(key);
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        StringBuilder records = new StringBuilder();
+        for (String key : removed) {
+            records.append("R ").append(key).append('\n');
+        }
+        append(records.toString(), removed.size());
+        removed.forEach(values::remove);
+        snapshotIfDue();
+        return removed.size();
+    }
+
+    /**
+     * Appends records to the log and forces them to disk.
+     */
+    private void append(String records, int count) throws IOException {
+        if (closed) {
+            throw new IOException("Checkpoint store is closed.");
+        }
+        if (directory == null) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        log.force(false);
+        logRecords += count;
+    }
+
+    private void snapshotIfDue() throws IOException {
+        if (logRecords > Math.max(MIN_SNAPSHOT_RECORDS, values.size())) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Writes the live keys to the snapshot and empties the log. The snapshot is replaced atomically,
+     * and replaying the old log over the new snapshot gives the same state, so a crash at any point
+     * loses nothing.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (directory == null || closed) {
+            return;
+        }
+        Path snapshot = directory.resolve(SNAPSHOT_NAME);
+        Path tmp = directory.resolve(SNAPSHOT_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                writer.write("P " + entry.getValue() + " " + entry.getKey() + "\n");
+            }
+            writer.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.truncate(0);
+        log.position(0);
+        log.force(true);
+        logRecords = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (log != null) {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package iapi.convert_data;
+
+import org.apache.avro.Schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps CSV column ordinals to {@link RobotData} schema fields. Compiled once per file from the
+ * header, so rows are converted by index only instead of by header name.
+ *
+ * Columns are matched to schema fields by name, ignoring case, spaces and punctuation
+ * ("Temperature of Each Joint" binds to TemperatureOfEachJoint). A header that is missing a
+ * field, or binds one field twice, is rejected when the plan is compiled.
+ */
+public class ColumnBinding {
+
+    private final int[] columns; // Column ordinal per schema field position
+    private final int minFieldCount;
+
+    private ColumnBinding(int[] columns) {
+        this.columns = columns;
+        this.minFieldCount = Arrays.stream(columns).max().orElse(-1) + 1;
+    }
+
+    /**
+     * Compiles a binding from a CSV header to the RobotData schema.
+     *
+     * @throws IllegalArgumentException if the header does not cover every schema field exactly once.
+     */
+    public static ColumnBinding forHeader(String[] header) {
+        return forHeader(header, RobotData.getClassSchema());
+    }
+
+    public static ColumnBinding forHeader(String[] header, Schema schema) {
+        Map<String, Integer> fieldsByKey = new HashMap<>();
+        for (Schema.Field field : schema.getFields()) {
+            fieldsByKey.put(normalize(field.name()), field.pos());
+        }
+
+        int[] columns = new int[schema.getFields().size()];
+        Arrays.fill(columns, -1);
+        List<String> unmatched = new ArrayList<>();
+        List<String> duplicates = new ArrayList<>();
+        for (int column = 0; column < header.length; column++) {
+            Integer pos = fieldsByKey.get(normalize(header[column]));
+            if (pos == null) {
+                unmatched.add(header[column]);
+            } else if (columns[pos] >= 0) {
+                duplicates.add(header[column]);
+            } else {
+                columns[pos] = column;
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            if (columns[field.pos()] < 0) {
+                missing.add(field.name());
+            }
+        }
+
+        if (!missing.isEmpty() || !duplicates.isEmpty()) {
+            StringBuilder message = new StringBuilder("Header does not match schema " + schema.getName() + ".");
+            if (!missing.isEmpty()) {
+                message.append(" Missing columns for fields: ").append(missing).append('.');
+            }
+            if (!duplicates.isEmpty()) {
+                message.append(" Duplicate columns: ").append(duplicates).append('.');
+            }
+            if (!unmatched.isEmpty()) {
+                message.append(" Unrecognised columns: ").append(unmatched).append('.');
+            }
+            throw new IllegalArgumentException(message.toString());
+        }
+        return new ColumnBinding(columns);
+    }
+
+    private static String normalize(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                key.append(c);
+            }
+        }
+        return key.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Checks that the current row has every bound column. Call once per row before the field accessors.
+     */
+    public void checkRow(CSVTokenizer tokenizer) {
+        if (tokenizer.fieldCount() < minFieldCount) {
+            throw new IllegalArgumentException("Row " + tokenizer.rowNumber() + " has " + tokenizer.fieldCount()
+                    + " fields, expected at least " + minFieldCount);
+        }
+    }
+
+    public int column(int fieldPos) {
+        return columns[fieldPos];
+    }
+
+    public int intField(CSVTokenizer tokenizer, int fieldPos) {
+        int column = columns[fieldPos];
+        return DataValidator.parseInt(tokenizer.array(), tokenizer.fieldStart(column), tokenizer.fieldEnd(column));
+    }
+
+    public double doubleField(CSVTokenizer tokenizer, int fieldPos) {
+        int column = columns[fieldPos];
+        return DataValidator.parseDouble(tokenizer.array(), tokenizer.fieldStart(column), tokenizer.fieldEnd(column));
+    }
+
+    /**
+     * Parses an array column into {@code dest[offset, offset + maxLength)}. Returns the number of
+     * elements, or -1 if there are more than {@code maxLength}.
+     */
+    public int arrayField(CSVTokenizer tokenizer, int fieldPos, double[] dest, int offset, int maxLength) {
+        int column = columns[fieldPos];
+        return DataValidator.parseArray(tokenizer.array(), tokenizer.fieldStart(column), tokenizer.fieldEnd(column), dest, offset, maxLength);
+    }
+}
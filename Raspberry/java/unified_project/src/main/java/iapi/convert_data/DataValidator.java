@@ -1,9 +1,11 @@
 package iapi.convert_data;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 public class DataValidator {
+
     public static int parseInt(String value) {
         try {
             return Integer.parseInt(value);
@@ -20,19 +22,140 @@ public class DataValidator {
         }
     }
 
+    /**
+     * Parses a bracketed array such as {@code [1.0, 2.5, -3e-4]} in a single pass.
+     */
     public static List<Double> parseArray(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        return parseArray(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Parses an ASCII integer from {@code buf[from, to)} with the same rules as {@link Integer#parseInt(String)}.
+     */
+    public static int parseInt(byte[] buf, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i >= to) {
+            throw new IllegalArgumentException("Invalid integer: '" + slice(buf, from, to) + "'");
+        }
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Invalid integer: '" + slice(buf, from, to) + "'");
+            }
+            result = result * 10 + digit;
+            if (result > (long) Integer.MAX_VALUE + 1) {
+                throw new IllegalArgumentException("Invalid integer: '" + slice(buf, from, to) + "'");
+            }
+        }
+        if (negative) {
+            result = -result;
+        }
+        if (result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid integer: '" + slice(buf, from, to) + "'");
+        }
+        return (int) result;
+    }
+
+    /**
+     * Parses an ASCII decimal from {@code buf[from, to)}, correctly rounded, without creating a String.
+     */
+    public static double parseDouble(byte[] buf, int from, int to) {
         try {
-            value = value.replace("[", "").replace("]", "");
-            String[] parts = value.split(",");
-            List<Double> result = new ArrayList<>();
-            for (String part : parts) {
-                if (!part.trim().isEmpty()) { // Handle potential empty strings
-                    result.add(Double.parseDouble(part.trim()));
+            return FastDoubleParser.parse(buf, from, to);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid double: '" + slice(buf, from, to) + "'");
+        }
+    }
+
+    /**
+     * Parses a bracketed array such as {@code [1.0, 2.5, -3e-4]} from {@code buf[from, to)}.
+     */
+    public static List<Double> parseArray(byte[] buf, int from, int to) {
+        double[] values = new double[16];
+        int count;
+        while ((count = parseArray(buf, from, to, values, 0)) < 0) {
+            values = new double[values.length * 2];
+        }
+        List<Double> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Parses a bracketed array from {@code buf[from, to)} in a single pass, writing the elements to
+     * {@code dest} starting at {@code offset}. Returns the number of elements, or -1 if they do not
+     * fit in {@code dest}. Empty elements are skipped, as in {@link #parseArray(String)}.
+     */
+    public static int parseArray(byte[] buf, int from, int to, double[] dest, int offset) {
+        return parseArray(buf, from, to, dest, offset, dest.length - offset);
+    }
+
+    /**
+     * Like {@link #parseArray(byte[], int, int, double[], int)}, but writes at most {@code maxLength}
+     * elements so a fixed-width slot never spills into its neighbour.
+     */
+    public static int parseArray(byte[] buf, int from, int to, double[] dest, int offset, int maxLength) {
+        int i = skipSpaces(buf, from, to);
+        if (i < to && buf[i] == '[') {
+            i++;
+        }
+        int end = to;
+        while (end > i && isBlank(buf[end - 1])) {
+            end--;
+        }
+        if (end > i && buf[end - 1] == ']') {
+            end--;
+        }
+
+        int count = 0;
+        while (i < end) {
+            i = skipSpaces(buf, i, end);
+            int start = i;
+            while (i < end && buf[i] != ',') {
+                i++;
+            }
+            int stop = i;
+            while (stop > start && isBlank(buf[stop - 1])) {
+                stop--;
+            }
+            if (stop > start) { // Handle potential empty elements
+                if (count >= maxLength) {
+                    return -1;
+                }
+                try {
+                    dest[offset + count] = FastDoubleParser.parse(buf, start, stop);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid array format: '" + slice(buf, from, to) + "'");
                 }
+                count++;
             }
-            return result;
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Invalid array format: '" + value + "'");
+            i++; // Skip the comma
+        }
+        return count;
+    }
+
+    private static int skipSpaces(byte[] buf, int from, int to) {
+        while (from < to && isBlank(buf[from])) {
+            from++;
         }
+        return from;
+    }
+
+    // Same notion of whitespace as String.trim()
+    private static boolean isBlank(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    private static String slice(byte[] buf, int from, int to) {
+        return new String(buf, from, to - from, StandardCharsets.ISO_8859_1);
     }
 }
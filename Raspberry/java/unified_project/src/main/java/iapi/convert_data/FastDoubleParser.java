@@ -0,0 +1,232 @@
+package iapi.convert_data;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Correctly rounded ASCII decimal to double conversion without intermediate Strings.
+ *
+ * Uses Clinger's exact fast path when the significand and power of ten are both exact doubles, and
+ * the Eisel-Lemire algorithm (as in Lemire, "Number Parsing at a Gigabyte per Second") for the
+ * remaining inputs with up to 19 significant digits. The rare inputs that neither can decide,
+ * as well as NaN, Infinity and hex literals, fall back to {@link Double#parseDouble(String)}.
+ */
+public final class FastDoubleParser {
+
+    private static final int SMALLEST_POWER_OF_TEN = -342;
+    private static final int LARGEST_POWER_OF_TEN = 308;
+    private static final int MANTISSA_EXPLICIT_BITS = 52;
+    private static final int MINIMUM_EXPONENT = -1023;
+    private static final int INFINITE_POWER = 0x7FF;
+    private static final int MAX_SIGNIFICANT_DIGITS = 19;
+
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // 128-bit approximations of 5^q for q in [-342, 308], high word first
+    private static final long[] POWERS_OF_FIVE = computePowersOfFive();
+
+    private FastDoubleParser() {
+    }
+
+    /**
+     * Parses {@code buf[from, to)}. Throws {@link NumberFormatException} on invalid input.
+     */
+    public static double parse(byte[] buf, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long significand = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        boolean truncated = false;
+
+        for (; i < to; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            sawDigit = true;
+            if (significantDigits < MAX_SIGNIFICANT_DIGITS) {
+                significand = significand * 10 + digit;
+                if (significand != 0) {
+                    significantDigits++;
+                }
+            } else {
+                exponent++;
+                truncated |= digit != 0;
+            }
+        }
+        if (i < to && buf[i] == '.') {
+            i++;
+            for (; i < to; i++) {
+                int digit = buf[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                sawDigit = true;
+                if (significantDigits < MAX_SIGNIFICANT_DIGITS) {
+                    significand = significand * 10 + digit;
+                    exponent--;
+                    if (significand != 0) {
+                        significantDigits++;
+                    }
+                } else {
+                    truncated |= digit != 0;
+                }
+            }
+        }
+        if (!sawDigit) {
+            return slowParse(buf, from, to); // NaN, Infinity or invalid input
+        }
+        if (i < to && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (buf[i] == '-' || buf[i] == '+')) {
+                negativeExponent = buf[i] == '-';
+                i++;
+            }
+            if (i >= to) {
+                return slowParse(buf, from, to);
+            }
+            int explicitExponent = 0;
+            for (; i < to; i++) {
+                int digit = buf[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return slowParse(buf, from, to);
+                }
+                if (explicitExponent < 100_000) {
+                    explicitExponent = explicitExponent * 10 + digit;
+                }
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != to || truncated) {
+            return slowParse(buf, from, to);
+        }
+
+        double value = toDouble(significand, exponent);
+        if (Double.isNaN(value)) {
+            return slowParse(buf, from, to);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns {@code significand * 10^exponent} correctly rounded, or NaN when the fast algorithms
+     * cannot decide the rounding and the caller must fall back.
+     */
+    static double toDouble(long significand, int exponent) {
+        if (significand == 0 || exponent < SMALLEST_POWER_OF_TEN) {
+            return 0.0;
+        }
+        if (exponent > LARGEST_POWER_OF_TEN) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // Clinger: both operands exact, so one IEEE operation rounds correctly
+        if (exponent >= -22 && exponent <= 22 && Long.compareUnsigned(significand, 1L << 53) <= 0) {
+            return exponent < 0
+                    ? significand / EXACT_POWERS_OF_TEN[-exponent]
+                    : significand * EXACT_POWERS_OF_TEN[exponent];
+        }
+        return eiselLemire(significand, exponent);
+    }
+
+    private static double eiselLemire(long w, int q) {
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+        long high = Math.unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        long precisionMask = 0xFFFFFFFFFFFFFFFFL >>> (MANTISSA_EXPLICIT_BITS + 3);
+        if ((high & precisionMask) == precisionMask) {
+            long secondHigh = Math.unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (Long.compareUnsigned(secondHigh, low) > 0) {
+                high++;
+            }
+        }
+        if (low == 0xFFFFFFFFFFFFFFFFL && (q < -27 || q > 55)) {
+            return Double.NaN; // Product may be off by one in the last bit: let the caller decide
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - MANTISSA_EXPLICIT_BITS - 3;
+        long mantissa = high >>> shift;
+        int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz - MINIMUM_EXPONENT;
+
+        if (power2 <= 0) { // Subnormal
+            if (-power2 + 1 >= 64) {
+                return 0.0;
+            }
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            power2 = mantissa < (1L << MANTISSA_EXPLICIT_BITS) ? 0 : 1;
+            return Double.longBitsToDouble(mantissa | ((long) power2 << MANTISSA_EXPLICIT_BITS));
+        }
+
+        // Exactly halfway between two doubles: round to even
+        if (Long.compareUnsigned(low, 1) <= 0 && q >= -4 && q <= 23 && (mantissa & 3) == 1
+                && (mantissa << shift) == high) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= (2L << MANTISSA_EXPLICIT_BITS)) {
+            mantissa = 1L << MANTISSA_EXPLICIT_BITS;
+            power2++;
+        }
+        mantissa &= ~(1L << MANTISSA_EXPLICIT_BITS);
+        if (power2 >= INFINITE_POWER) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.longBitsToDouble(mantissa | ((long) power2 << MANTISSA_EXPLICIT_BITS));
+    }
+
+    private static double slowParse(byte[] buf, int from, int to) {
+        return Double.parseDouble(new String(buf, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Builds the table the same way as the fast_float reference implementation: truncated 5^q for
+     * q >= 0, and 2^b / 5^-q rounded up for q < 0, both normalized to 128 bits.
+     */
+    private static long[] computePowersOfFive() {
+        long[] table = new long[2 * (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1)];
+        BigInteger twoTo128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger twoTo127 = BigInteger.ONE.shiftLeft(127);
+        int index = 0;
+        for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; q++) {
+            BigInteger value;
+            if (q < 0) {
+                BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                int z = power5.subtract(BigInteger.ONE).bitLength(); // Smallest z with 2^z >= 5^-q
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                value = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                while (value.compareTo(twoTo128) >= 0) {
+                    value = value.shiftRight(1);
+                }
+            } else {
+                value = BigInteger.valueOf(5).pow(q);
+                if (value.compareTo(twoTo127) < 0) {
+                    value = value.shiftLeft(128 - value.bitLength());
+                }
+                if (value.compareTo(twoTo128) >= 0) {
+                    value = value.shiftRight(value.bitLength() - 128);
+                }
+            }
+            table[index++] = value.shiftRight(64).longValue();
+            table[index++] = value.longValue();
+        }
+        return table;
+    }
+}
@@ -1,6 +1,14 @@
 package iapi.convert_data;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.hadoop.util.ConfigurationUtil;
+import org.apache.parquet.hadoop.util.HadoopOutputFile;
+import org.apache.parquet.io.OutputFile;
+
+import java.io.File;
+import java.io.IOException;
 
 public class HadoopConfig {
     public static Configuration getHadoopConfiguration() {
@@ -20,4 +28,12 @@ public class HadoopConfig {
 
         return conf;
     }
+
+    /**
+     * Opens a local file through Hadoop's FileSystem, for {@code --io=hadoop}. Kept here so the NIO
+     * write path does not refer to Hadoop classes.
+     */
+    public static OutputFile outputFile(File file, ParquetConfiguration conf) throws IOException {
+        return HadoopOutputFile.fromPath(new Path(file.getAbsolutePath()), ConfigurationUtil.createHadoopConfiguration(conf));
+    }
 }
@@ -0,0 +1,437 @@
+package iapi.convert_data;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.parquet.format.ColumnChunk;
+import org.apache.parquet.format.FileMetaData;
+import org.apache.parquet.format.KeyValue;
+import org.apache.parquet.format.RowGroup;
+import org.apache.parquet.format.SchemaElement;
+import org.apache.parquet.format.Statistics;
+import org.apache.parquet.format.Type;
+import org.apache.parquet.format.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The list of completed Parquet files in an output directory, kept in {@code _manifest.csv}
+ * with one line per file: path relative to the directory, row count, Timestamp range in epoch
+ * seconds, size in bytes and whether the file was sent downstream. Paths are quoted as CSV where
+ * needed. {@link #markSent} appends a short {@code sent,<path>} line instead of rewriting the file;
+ * those lines are folded into the entries the next time the manifest is rewritten.
+ *
+ * Files are written under a hidden {@code .<name>.inprogress} name and only renamed to their
+ * {@code .parquet} name by {@link #publish(Path, Path)} once complete, so anything that lists
+ * {@code *.parquet} or reads the manifest never sees a file without its footer. The entries are
+ * read from each file's own footer, so the manifest can always be rebuilt from the files.
+ *
+ * Changes are serialized per directory across all instances in the JVM, as the writers, the
+ * {@link ParquetCompactor} and the Kafka sender each open the manifest of the same directory.
+ */
+public class OutputManifest {
+
+    public static final String FILE_NAME = "_manifest.csv";
+    public static final String IN_PROGRESS_SUFFIX = ".inprogress";
+    /** Footer key of a compacted file listing the files it replaces, as one CSV line. */
+    public static final String COMPACTED_FROM_KEY = "iapi.compacted.from";
+    static final String COMPACTED_PREFIX = "compacted-";
+    private static final String HEADER = "path,rows,min_timestamp,max_timestamp,bytes,sent";
+    private static final String SENT_RECORD = "sent";
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final Path manifestFile;
+    private final Object lock;
+
+    /**
+     * A completed file. The timestamps are NaN for a file without rows.
+     */
+    public record Entry(String path, long rows, double minTimestamp, double maxTimestamp, long bytes, boolean sent) {
+
+        /**
+         * Parses a manifest line; lines written before the sent column existed are not sent.
+         */
+        static Entry parse(CSVRecord record) {
+            if (record.size() != 5 && record.size() != 6) {
+                throw new IllegalArgumentException("Invalid manifest line " + record.getRecordNumber() + ": " + record.toList());
+            }
+            return new Entry(record.get(0), Long.parseLong(record.get(1)), Double.parseDouble(record.get(2)),
+                    Double.parseDouble(record.get(3)), Long.parseLong(record.get(4)), record.size() == 6 && record.get(5).equals("1"));
+        }
+
+        String toLine() {
+            return CSVFormat.DEFAULT.format(path, rows, minTimestamp, maxTimestamp, bytes, sent ? "1" : "0");
+        }
+
+        Entry asSent() {
+            return new Entry(path, rows, minTimestamp, maxTimestamp, bytes, true);
+        }
+    }
+
+    public OutputManifest(Path directory) {
+        this.directory = directory;
+        this.manifestFile = directory.resolve(FILE_NAME);
+        this.lock = LOCKS.computeIfAbsent(directory.toAbsolutePath().normalize(), key -> new Object());
+    }
+
+    /**
+     * Returns the in-progress name for {@code target}: hidden, and without the .parquet suffix that readers look for.
+     */
+    public static Path inProgressPath(Path target) {
+        return target.resolveSibling("." + target.getFileName() + IN_PROGRESS_SUFFIX);
+    }
+
+    /**
+     * Syncs the finished file, renames it to {@code target} in one step and adds it to the manifest.
+     */
+    public Entry publish(Path inProgress, Path target) throws IOException {
+        synchronized (lock) {
+            Entry entry = move(inProgress, target);
+            append(List.of(entry));
+            return entry;
+        }
+    }
+
+    /**
+     * Publishes a compacted file and swaps it for the files it replaces in one manifest update, then
+     * deletes those files. The compacted file lists them under {@link #COMPACTED_FROM_KEY}, so
+     * {@link #recover()} can finish the swap after a crash at any point.
+     */
+    public Entry replace(Collection<Entry> replaced, Path inProgress, Path target) throws IOException {
+        synchronized (lock) {
+            Entry entry = move(inProgress, target);
+            Set<String> removed = new HashSet<>();
+            replaced.forEach(old -> removed.add(old.path()));
+            List<Entry> entries = new ArrayList<>();
+            for (Entry old : read()) {
+                if (!removed.contains(old.path())) {
+                    entries.add(old);
+                }
+            }
+            entries.add(entry);
+            rewrite(entries);
+            for (String path : removed) {
+                Files.deleteIfExists(directory.resolve(path));
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Records that a file was sent downstream, so it is not sent again after a restart and is no
+     * longer compacted. Appends one line, without reading the manifest; a path that is not listed
+     * is ignored when the manifest is read.
+     */
+    public void markSent(String path) throws IOException {
+        synchronized (lock) {
+            appendLines(CSVFormat.DEFAULT.format(SENT_RECORD, path) + '\n');
+        }
+    }
+
+    /**
+     * Brings the directory back to a consistent state after a crash: deletes leftover in-progress
+     * files, which have no footer, finishes interrupted compactions and adds complete files that are
+     * missing from the manifest. Also drops the entries of files that no longer exist, such as sent
+     * files removed by an operator, and folds the appended sent lines into the entries.
+     */
+    public void recover() throws IOException {
+        synchronized (lock) {
+            if (!Files.isDirectory(directory)) {
+                return;
+            }
+            List<Path> all;
+            try (Stream<Path> files = Files.walk(directory)) {
+                all = files.filter(Files::isRegularFile).sorted().toList();
+            }
+            for (Path file : all) {
+                if (file.getFileName().toString().endsWith(IN_PROGRESS_SUFFIX)) {
+                    System.err.printf("Deleting incomplete Parquet file left by an earlier run: %s%n", file);
+                    Files.delete(file);
+                }
+            }
+
+            Contents contents = readContents();
+            List<Entry> entries = new ArrayList<>(contents.entries());
+            boolean removed = entries.removeIf(entry -> !Files.exists(directory.resolve(entry.path())));
+            Set<String> listed = entries.stream().map(Entry::path).collect(Collectors.toCollection(HashSet::new));
+
+            // A compacted file that is not listed yet was renamed just before a crash: finish its swap.
+            // Once it is listed, only unlisted files older than it can be its leftover sources; anything
+            // else under a source's name is a newer file that reused the name.
+            Set<String> replaced = new HashSet<>();
+            Map<String, FileTime> leftovers = new HashMap<>();
+            for (Path file : all) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(COMPACTED_PREFIX) || !name.endsWith(".parquet")) {
+                    continue;
+                }
+                try {
+                    Set<String> sources = compactedFrom(readFooter(file));
+                    if (listed.contains(relativePath(file))) {
+                        FileTime compactedAt = Files.getLastModifiedTime(file);
+                        sources.forEach(source -> leftovers.merge(source, compactedAt, (x, y) -> x.compareTo(y) > 0 ? x : y));
+                    } else {
+                        replaced.addAll(sources);
+                    }
+                } catch (IOException e) {
+                    System.err.printf("Cannot read compacted file %s: %s%n", file, e.getMessage());
+                }
+            }
+            removed |= entries.removeIf(entry -> replaced.contains(entry.path()));
+            listed.removeAll(replaced);
+
+            List<Entry> recovered = new ArrayList<>();
+            for (Path file : all) {
+                String path = relativePath(file);
+                if (!file.getFileName().toString().endsWith(".parquet") || listed.contains(path)) {
+                    continue;
+                }
+                if (replaced.contains(path)
+                        || (leftovers.containsKey(path) && Files.getLastModifiedTime(file).compareTo(leftovers.get(path)) <= 0)) {
+                    System.err.printf("Deleting %s, which was compacted by an earlier run%n", file);
+                    Files.delete(file);
+                    continue;
+                }
+                try {
+                    recovered.add(describe(file));
+                } catch (IOException e) {
+                    System.err.printf("Not adding %s to the manifest: %s%n", file, e.getMessage());
+                }
+            }
+            if (!recovered.isEmpty()) {
+                System.out.printf("Added %d Parquet file(s) missing from %s.%n", recovered.size(), manifestFile);
+            }
+            if (removed || contents.sentRecords() > 0) {
+                entries.addAll(recovered);
+                rewrite(entries);
+            } else if (!recovered.isEmpty()) {
+                append(recovered);
+            }
+        }
+    }
+
+    /**
+     * @return The manifest entries in the order the files were completed; empty if there is no manifest yet.
+     */
+    public List<Entry> read() throws IOException {
+        return readContents().entries();
+    }
+
+    /**
+     * The entries of the manifest, and the number of sent lines that were applied to them.
+     */
+    private record Contents(List<Entry> entries, int sentRecords) {
+    }
+
+    private Contents readContents() throws IOException {
+        synchronized (lock) { // Not while a line is half appended
+            if (!Files.exists(manifestFile)) {
+                return new Contents(List.of(), 0);
+            }
+            List<Entry> entries = new ArrayList<>();
+            Map<String, Integer> positions = new HashMap<>();
+            int sentRecords = 0;
+            try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8);
+                 CSVParser parser = CSVFormat.DEFAULT.parse(reader)) {
+                for (CSVRecord record : parser) {
+                    if (record.size() == 2 && record.get(0).equals(SENT_RECORD)) {
+                        sentRecords++;
+                        Integer position = positions.get(record.get(1));
+                        if (position != null) {
+                            entries.set(position, entries.get(position).asSent());
+                        }
+                    } else if (!(record.get(0).equals("path") && record.size() > 1 && record.get(1).equals("rows"))) { // This or an earlier header
+                        Entry entry = Entry.parse(record);
+                        positions.put(entry.path(), entries.size());
+                        entries.add(entry);
+                    }
+                }
+            }
+            return new Contents(entries, sentRecords);
+        }
+    }
+
+    /**
+     * Writes paths as one CSV line, for {@link #COMPACTED_FROM_KEY}.
+     */
+    static String joinPaths(Collection<String> paths) {
+        return CSVFormat.DEFAULT.format(paths.toArray());
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Entry move(Path inProgress, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(inProgress, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(inProgress, target, StandardCopyOption.ATOMIC_MOVE);
+        return describe(target);
+    }
+
+    /**
+     * Replaces the whole manifest through a synced temporary file, so readers see the old or the new list.
+     */
+    private void rewrite(List<Entry> entries) throws IOException {
+        StringBuilder lines = new StringBuilder(HEADER).append('\n');
+        for (Entry entry : entries) {
+            lines.append(entry.toLine()).append('\n');
+        }
+        Path temporary = manifestFile.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, manifestFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void append(List<Entry> entries) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Entry entry : entries) {
+            lines.append(entry.toLine()).append('\n');
+        }
+        appendLines(lines.toString());
+    }
+
+    private void appendLines(String lines) throws IOException {
+        if (!Files.exists(manifestFile)) {
+            lines = HEADER + '\n' + lines;
+        }
+        try (FileChannel channel = FileChannel.open(manifestFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private String relativePath(Path file) {
+        return directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * Reads the row count and Timestamp range from the file's footer, without Hadoop.
+     *
+     * @throws IOException if the file is not a complete Parquet file.
+     */
+    Entry describe(Path file) throws IOException {
+        FileMetaData metaData = readFooter(file);
+
+        int column = -1;
+        Type type = null;
+        int leaf = 0;
+        for (SchemaElement element : metaData.getSchema().subList(1, metaData.getSchema().size())) {
+            if (element.getNum_children() == 0) {
+                if (element.getName().equals("Timestamp")) {
+                    column = leaf;
+                    type = element.getType();
+                }
+                leaf++;
+            }
+        }
+        if (column < 0) {
+            throw new IOException("No Timestamp column in " + file);
+        }
+
+        double min = Double.NaN;
+        double max = Double.NaN;
+        for (RowGroup rowGroup : metaData.getRow_groups()) {
+            ColumnChunk chunk = rowGroup.getColumns().get(column);
+            Statistics statistics = chunk.getMeta_data().getStatistics();
+            if (rowGroup.getNum_rows() == 0 || statistics == null) {
+                continue;
+            }
+            double groupMin = decodeTimestamp(type, statistics.isSetMin_value() ? statistics.getMin_value() : statistics.getMin());
+            double groupMax = decodeTimestamp(type, statistics.isSetMax_value() ? statistics.getMax_value() : statistics.getMax());
+            min = Double.isNaN(min) ? groupMin : Math.min(min, groupMin);
+            max = Double.isNaN(max) ? groupMax : Math.max(max, groupMax);
+        }
+        return new Entry(relativePath(file), metaData.getNum_rows(), min, max, Files.size(file), false);
+    }
+
+    private static FileMetaData readFooter(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12) {
+                throw new IOException("Too short for a Parquet file: " + file);
+            }
+            ByteBuffer tail = readFully(channel, size - 8, 8).order(ByteOrder.LITTLE_ENDIAN);
+            int footerLength = tail.getInt(0);
+            if (!tail.slice(4, 4).equals(ByteBuffer.wrap(MAGIC)) || footerLength <= 0 || footerLength > size - 12) {
+                throw new IOException("No Parquet footer in " + file);
+            }
+            ByteBuffer footer = readFully(channel, size - 8 - footerLength, footerLength);
+            return Util.readFileMetaData(new ByteArrayInputStream(footer.array()));
+        }
+    }
+
+    /**
+     * @return The manifest paths of the files a compacted file replaces.
+     */
+    private Set<String> compactedFrom(FileMetaData metaData) throws IOException {
+        Set<String> paths = new LinkedHashSet<>();
+        if (metaData.getKey_value_metadata() != null) {
+            for (KeyValue keyValue : metaData.getKey_value_metadata()) {
+                if (keyValue.getKey().equals(COMPACTED_FROM_KEY) && keyValue.getValue() != null) {
+                    try (CSVParser parser = CSVFormat.DEFAULT.parse(new StringReader(keyValue.getValue()))) {
+                        for (CSVRecord record : parser) {
+                            for (String path : record) {
+                                if (!path.isBlank()) {
+                                    paths.add(path);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static double decodeTimestamp(Type type, byte[] value) {
+        ByteBuffer buffer = ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN);
+        return type == Type.INT64 ? buffer.getLong() / 1e6 : buffer.getDouble(); // INT64 is timestamp-micros
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+}
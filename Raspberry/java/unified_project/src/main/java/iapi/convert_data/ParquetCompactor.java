@@ -0,0 +1,272 @@
+package iapi.convert_data;
+
+import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.ParquetProperties;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.LocalInputFile;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.schema.MessageType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges small Parquet files listed in an {@link OutputManifest} into files of about the target
+ * size. Column chunks are copied byte for byte together with their bloom filters, column indexes
+ * and offset indexes, so nothing is decoded or recompressed and page skipping keeps working.
+ *
+ * Only files in the same directory (the same partition) with the same schema are merged. Each
+ * compacted file is published with {@link OutputManifest#replace}, which swaps it for its inputs.
+ * Copying is throttled to a byte rate so a compaction pass does not starve the writers of disk.
+ *
+ * Not thread-safe; run it from a single thread.
+ */
+public class ParquetCompactor {
+
+    public static final long DEFAULT_BYTES_PER_SECOND = 10L * 1024 * 1024;
+    public static final long DEFAULT_HOLD_MILLIS = 60_000;
+
+    private final OutputManifest manifest;
+    private final long targetFileSizeBytes;
+    private final long bytesPerSecond;
+    private final long holdMillis;
+
+    private long bytesCopied;
+    private long filesCompacted;
+    private long passStartNanos;
+    private long passBytes;
+
+    /**
+     * @param manifest            Manifest of the directory to compact.
+     * @param targetFileSizeBytes Size of the compacted files; files under half of it count as small.
+     * @param bytesPerSecond      Copy rate limit.
+     * @param holdMillis          How long a small file is held back from sending in the hope of compacting it, see {@link #isPending}.
+     */
+    public ParquetCompactor(OutputManifest manifest, long targetFileSizeBytes, long bytesPerSecond, long holdMillis) {
+        if (targetFileSizeBytes <= 0 || bytesPerSecond <= 0 || holdMillis < 0) {
+            throw new IllegalArgumentException("Compaction target size and rate must be greater than 0.");
+        }
+        this.manifest = manifest;
+        this.targetFileSizeBytes = targetFileSizeBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.holdMillis = holdMillis;
+    }
+
+    public boolean isSmall(OutputManifest.Entry entry) {
+        return entry.bytes() < targetFileSizeBytes / 2;
+    }
+
+    /**
+     * @return Whether the file is small and recent enough that it may still be compacted, so a
+     * consumer should wait for the compacted file rather than take this one.
+     */
+    public boolean isPending(OutputManifest.Entry entry) {
+        if (!isSmall(entry)) {
+            return false;
+        }
+        try {
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(manifest.getDirectory().resolve(entry.path())).toMillis();
+            return age < holdMillis;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs one compaction pass over the small files that are not {@link OutputManifest#markSent sent}
+     * yet. The sent flag is read from the manifest, so files sent before a restart are never merged
+     * into a file that would be sent again.
+     *
+     * @return The compacted files that were published.
+     */
+    public List<OutputManifest.Entry> compact() throws IOException {
+        passStartNanos = System.nanoTime();
+        passBytes = 0;
+
+        // Small files by directory, in the order they were completed
+        Map<String, List<OutputManifest.Entry>> byDirectory = new LinkedHashMap<>();
+        for (OutputManifest.Entry entry : manifest.read()) {
+            if (isSmall(entry) && !entry.sent()) {
+                int slash = entry.path().lastIndexOf('/');
+                byDirectory.computeIfAbsent(slash < 0 ? "" : entry.path().substring(0, slash), key -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        List<OutputManifest.Entry> compacted = new ArrayList<>();
+        for (Map.Entry<String, List<OutputManifest.Entry>> directory : byDirectory.entrySet()) {
+            for (List<OutputManifest.Entry> group : pack(directory.getValue())) {
+                try {
+                    compacted.add(merge(directory.getKey(), group));
+                } catch (IllegalArgumentException e) {
+                    System.err.printf("Skipping compaction of %d files in '%s': %s%n", group.size(), directory.getKey(), e.getMessage());
+                }
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Packs the files into runs of at least two whose total stays within the target size.
+     */
+    private List<List<OutputManifest.Entry>> pack(List<OutputManifest.Entry> files) {
+        List<List<OutputManifest.Entry>> groups = new ArrayList<>();
+        List<OutputManifest.Entry> group = new ArrayList<>();
+        long groupBytes = 0;
+        for (OutputManifest.Entry file : files) {
+            if (!group.isEmpty() && groupBytes + file.bytes() > targetFileSizeBytes) {
+                if (group.size() > 1) {
+                    groups.add(group);
+                }
+                group = new ArrayList<>();
+                groupBytes = 0;
+            }
+            group.add(file);
+            groupBytes += file.bytes();
+        }
+        if (group.size() > 1) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    private OutputManifest.Entry merge(String directory, List<OutputManifest.Entry> group) throws IOException {
+        File folder = directory.isEmpty() ? manifest.getDirectory().toFile() : manifest.getDirectory().resolve(directory).toFile();
+        List<CopyReader> readers = new ArrayList<>();
+        File target = null;
+        File inProgress = null;
+        ParquetFileWriter writer = null;
+        boolean ended = false;
+        try {
+            MessageType schema = null;
+            for (OutputManifest.Entry entry : group) {
+                CopyReader reader = new CopyReader(new LocalInputFile(manifest.getDirectory().resolve(entry.path())));
+                readers.add(reader);
+                MessageType fileSchema = reader.getFileMetaData().getSchema();
+                if (schema == null) {
+                    schema = fileSchema;
+                } else if (!schema.equals(fileSchema)) {
+                    throw new IllegalArgumentException(entry.path() + " has a different schema than " + group.get(0).path());
+                }
+            }
+
+            for (int index = 1; ; index++) {
+                target = new File(folder, OutputManifest.COMPACTED_PREFIX + index + ".parquet");
+                inProgress = OutputManifest.inProgressPath(target.toPath()).toFile();
+                if (!target.exists() && inProgress.createNewFile()) {
+                    break;
+                }
+            }
+
+            long start = System.nanoTime();
+            long groupBytes = 0;
+            writer = new ParquetFileWriter(new NioOutputFile(inProgress.toPath()), schema, ParquetFileWriter.Mode.OVERWRITE,
+                    ParquetWriter.DEFAULT_BLOCK_SIZE, 0, null, ParquetProperties.builder().build());
+            writer.start();
+            for (CopyReader reader : readers) {
+                groupBytes += copyRowGroups(reader, writer, schema);
+            }
+
+            Map<String, String> metaData = new HashMap<>(readers.get(0).getFileMetaData().getKeyValueMetaData());
+            metaData.put(OutputManifest.COMPACTED_FROM_KEY, OutputManifest.joinPaths(group.stream().map(OutputManifest.Entry::path).toList()));
+            writer.end(metaData);
+            ended = true;
+
+            OutputManifest.Entry entry = manifest.replace(group, inProgress.toPath(), target.toPath());
+            filesCompacted += group.size();
+            System.out.printf("Compacted %d files (%d bytes) into %s (%d bytes, %d rows) in %d ms%n", group.size(), groupBytes,
+                    entry.path(), entry.bytes(), entry.rows(), (System.nanoTime() - start) / 1_000_000);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            if (writer != null && !ended) {
+                try {
+                    writer.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            if (inProgress != null && inProgress.exists() && inProgress.delete()) {
+                System.err.println("Deleted incomplete compacted file: " + inProgress.getPath());
+            }
+            throw e;
+        } finally {
+            for (CopyReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Appends every row group of one file, column chunk by column chunk.
+     *
+     * @return The bytes copied.
+     */
+    private long copyRowGroups(CopyReader reader, ParquetFileWriter writer, MessageType schema) throws IOException {
+        long copied = 0;
+        for (BlockMetaData rowGroup : reader.getRowGroups()) {
+            writer.startBlock(rowGroup.getRowCount());
+            List<ColumnChunkMetaData> chunks = rowGroup.getColumns();
+            for (int column = 0; column < chunks.size(); column++) {
+                ColumnChunkMetaData chunk = chunks.get(column);
+                writer.appendColumnChunk(schema.getColumns().get(column), reader.stream(), chunk, reader.readBloomFilter(chunk),
+                        reader.readColumnIndex(chunk), reader.readOffsetIndex(chunk));
+                copied += chunk.getTotalSize();
+                throttle(chunk.getTotalSize());
+            }
+            writer.endBlock();
+        }
+        return copied;
+    }
+
+    /**
+     * Sleeps as long as the copying is ahead of the byte rate, counted from the start of the pass.
+     */
+    private void throttle(long bytes) throws InterruptedIOException {
+        bytesCopied += bytes;
+        passBytes += bytes;
+        long dueNanos = passStartNanos + passBytes * 1_000_000_000L / bytesPerSecond;
+        long aheadNanos = dueNanos - System.nanoTime();
+        if (aheadNanos > 0) {
+            try {
+                Thread.sleep(aheadNanos / 1_000_000, (int) (aheadNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Compaction interrupted");
+            }
+        }
+    }
+
+    public long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    public long getFilesCompacted() {
+        return filesCompacted;
+    }
+
+    /**
+     * A reader that lends its open stream for copying column chunks, so each input is opened once.
+     * The reader seeks before every read, so sharing the stream with appendColumnChunk is safe.
+     */
+    private static final class CopyReader extends ParquetFileReader {
+
+        CopyReader(InputFile file) throws IOException {
+            super(file, ParquetReadOptions.builder().build());
+        }
+
+        SeekableInputStream stream() {
+            return f;
+        }
+    }
+}
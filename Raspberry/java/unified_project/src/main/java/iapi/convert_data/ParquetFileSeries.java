@@ -0,0 +1,194 @@
+package iapi.convert_data;
+
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.io.OutputFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A numbered series of Parquet files in one directory ({@code <prefix><n>.parquet}), written one at
+ * a time and rolled over when the open file reaches the target size. Files are opened lazily on the
+ * first write, so a series that receives no rows leaves no file behind.
+ *
+ * The open file is written under its {@link OutputManifest#inProgressPath in-progress name} and
+ * published to the {@link OutputManifest} when it is closed. The sources of its rows are held in the
+ * {@link SourceTracker} until then. A series with a checkpoint key continues numbering after the last
+ * file it opened in an earlier run instead of probing for a free name from 1.
+ *
+ * Not thread-safe; owned by a single writer thread.
+ */
+class ParquetFileSeries {
+
+    // Name claims of all series, so a name is never free between one writer's rename and another's claim
+    private static final Object NAME_LOCK = new Object();
+
+    private final File directory;
+    private final String prefix;
+    private final ParquetConfiguration conf;
+    private final ParquetWriterOptions options;
+    private final WriterMemoryManager memoryManager;
+    private final ExecutorService flushExecutor;
+    private final OutputManifest manifest;
+    private final SourceTracker sources;
+    private final CheckpointStore checkpoint;
+    private final String checkpointKey; // Null if the numbering is not checkpointed
+    private final Set<String> fileSources = new HashSet<>(); // Sources with rows in the open file
+
+    private RobotDataFileWriter writer;
+    private File currentFile;
+    private File inProgressFile;
+    private String currentPath;
+    private int fileIndex;
+    private String source;
+    private String lastAddedSource;
+    private long lastWriteNanos = System.nanoTime();
+    private long openedNanos;
+    private boolean failed; // The open file holds part of a batch that could not be written
+
+    /**
+     * @param checkpointKey Key the last file number is stored under in the checkpoint, or null.
+     */
+    ParquetFileSeries(File directory, String prefix, ParquetConfiguration conf, ParquetWriterOptions options,
+                      WriterMemoryManager memoryManager, ExecutorService flushExecutor, OutputManifest manifest,
+                      SourceTracker sources, CheckpointStore checkpoint, String checkpointKey) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.conf = conf;
+        this.options = options;
+        this.memoryManager = memoryManager;
+        this.flushExecutor = flushExecutor;
+        this.manifest = manifest;
+        this.sources = sources;
+        this.checkpoint = checkpoint;
+        this.checkpointKey = checkpointKey;
+        this.fileIndex = checkpointKey == null ? 1 : (int) checkpoint.get(checkpointKey, 0) + 1;
+    }
+
+    /**
+     * Sets the source of the rows written next.
+     */
+    void setSource(String source) {
+        this.source = source;
+    }
+
+    void write(RobotDataBatch.Cursor row) throws IOException {
+        if (writer == null) {
+            open();
+        } else if (writer.getDataSize() >= options.getTargetFileSizeBytes()) {
+            // Data size is the writer's own count: bytes already flushed plus the open row group's buffers
+            long dataSize = writer.getDataSize();
+            close();
+            fileIndex++;
+            open();
+            System.out.printf("Max file size reached at %d bytes. Created new Parquet file: %s%n", dataSize, currentPath);
+        }
+        if (source != lastAddedSource && source != null) {
+            if (fileSources.add(source)) {
+                sources.acquire(source);
+            }
+            lastAddedSource = source;
+        }
+        if (options.isAvroWritePath()) {
+            writer.write(row.asRecord());
+        } else {
+            writer.write(row);
+        }
+        lastWriteNanos = System.nanoTime();
+    }
+
+    private void open() throws IOException {
+        if (!directory.exists() && directory.mkdirs()) {
+            System.out.println("Created directory: " + directory.getAbsolutePath());
+        }
+
+        // Claim the next name that is free both as a finished and as an in-progress file, so existing
+        // files and other writers' files are never overwritten
+        synchronized (NAME_LOCK) {
+            while (true) {
+                currentFile = new File(directory, prefix + fileIndex + ".parquet");
+                inProgressFile = OutputManifest.inProgressPath(currentFile.toPath()).toFile();
+                if (!currentFile.exists() && inProgressFile.createNewFile()) {
+                    break;
+                }
+                fileIndex++;
+            }
+        }
+        currentPath = currentFile.getPath();
+        openedNanos = System.nanoTime();
+        lastAddedSource = null;
+        if (checkpointKey != null) {
+            checkpoint.put(checkpointKey, fileIndex);
+        }
+
+        OutputFile file = options.isHadoopFileSystem()
+                ? HadoopConfig.outputFile(inProgressFile, conf)
+                : new NioOutputFile(inProgressFile.toPath());
+        writer = new RobotDataFileWriter(file, conf, options, memoryManager, flushExecutor);
+
+        System.out.println("Initialized Parquet writer for file: " + currentPath);
+    }
+
+    boolean isOpen() {
+        return writer != null;
+    }
+
+    /**
+     * @return When the open file was opened.
+     */
+    long getOpenedNanos() {
+        return openedNanos;
+    }
+
+    long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * Marks the open file as holding rows of a batch that could not be written completely, so
+     * {@link #close} deletes it rather than publishing it.
+     */
+    void fail() {
+        failed = writer != null;
+    }
+
+    /**
+     * Closes the open file, if any, and publishes it. The next write starts a new file in the series.
+     * A file that cannot be completed or was {@link #fail failed} is deleted rather than published,
+     * and its sources fail.
+     */
+    void close() {
+        if (writer != null) {
+            boolean published = false;
+            try {
+                writer.close();
+                if (options.isHadoopFileSystem()) {
+                    // Hadoop's local file system writes a checksum file next to the data, named after the in-progress file
+                    Files.deleteIfExists(inProgressFile.toPath().resolveSibling("." + inProgressFile.getName() + ".crc"));
+                }
+                if (!failed) {
+                    OutputManifest.Entry entry = manifest.publish(inProgressFile.toPath(), currentFile.toPath());
+                    System.out.printf("Closed Parquet writer for file: %s (%d rows)%n", currentPath, entry.rows());
+                    published = true;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error closing Parquet writer: " + e.getMessage());
+                e.printStackTrace();
+            }
+            if (!published) {
+                if (inProgressFile.delete()) {
+                    System.err.println("Deleted incomplete Parquet file: " + inProgressFile.getPath());
+                }
+                fileSources.forEach(sources::fail);
+            }
+            fileSources.forEach(sources::release);
+            fileSources.clear();
+            writer = null;
+            failed = false;
+        }
+    }
+}
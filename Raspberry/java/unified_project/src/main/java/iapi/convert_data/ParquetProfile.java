@@ -0,0 +1,87 @@
+package iapi.convert_data;
+
+import org.apache.avro.Schema;
+import org.apache.parquet.column.ParquetProperties;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.codec.ZstandardCodec;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+import java.util.Locale;
+
+/**
+ * Named codec and encoding profiles for the Parquet writers, selectable with {@code --profile=<name>}.
+ *
+ * The {@code _BSS} profiles write the double columns with BYTE_STREAM_SPLIT and keep dictionary
+ * encoding only for the int columns (ID, SafetyStatus, AnomalyState). The sensor doubles rarely
+ * repeat, so a dictionary for them is built and then thrown away for every page.
+ */
+public enum ParquetProfile {
+
+    UNCOMPRESSED(CompressionCodecName.UNCOMPRESSED, 0, true, false),
+    SNAPPY(CompressionCodecName.SNAPPY, 0, true, false),
+    SNAPPY_BSS(CompressionCodecName.SNAPPY, 0, false, true),
+    LZ4_RAW(CompressionCodecName.LZ4_RAW, 0, true, false),
+    GZIP(CompressionCodecName.GZIP, 0, true, false),
+    ZSTD_1(CompressionCodecName.ZSTD, 1, true, false),
+    ZSTD_3(CompressionCodecName.ZSTD, 3, true, false),
+    ZSTD_9(CompressionCodecName.ZSTD, 9, true, false),
+    ZSTD_3_BSS(CompressionCodecName.ZSTD, 3, false, true),
+    ZSTD_9_BSS(CompressionCodecName.ZSTD, 9, false, true);
+
+    private final CompressionCodecName codec;
+    private final int zstdLevel;
+    private final boolean dictionaryForDoubles;
+    private final boolean byteStreamSplit;
+
+    ParquetProfile(CompressionCodecName codec, int zstdLevel, boolean dictionaryForDoubles, boolean byteStreamSplit) {
+        this.codec = codec;
+        this.zstdLevel = zstdLevel;
+        this.dictionaryForDoubles = dictionaryForDoubles;
+        this.byteStreamSplit = byteStreamSplit;
+    }
+
+    /**
+     * Looks up a profile by name, ignoring case.
+     *
+     * @throws IllegalArgumentException if there is no such profile.
+     */
+    public static ParquetProfile fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public CompressionCodecName getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return The configuration for parquet-mr's {@code CodecFactory}, which reads the ZSTD level from it.
+     */
+    public ParquetConfiguration getCodecConfiguration() {
+        PlainParquetConfiguration conf = new PlainParquetConfiguration();
+        if (codec == CompressionCodecName.ZSTD) {
+            conf.setInt(ZstandardCodec.PARQUET_COMPRESS_ZSTD_LEVEL, zstdLevel);
+        }
+        return conf;
+    }
+
+    /**
+     * Applies the encodings of this profile to the writer properties.
+     */
+    public ParquetProperties.Builder apply(ParquetProperties.Builder properties) {
+        properties.withDictionaryEncoding(true)
+                .withByteStreamSplitEncoding(byteStreamSplit);
+        if (!dictionaryForDoubles) {
+            for (Schema.Field field : RobotDataLayout.SCHEMA.getFields()) {
+                switch (RobotDataLayout.type(field.pos())) {
+                    case DOUBLE -> properties.withDictionaryEncoding(field.name(), false);
+                    case ARRAY -> properties.withDictionaryEncoding(field.name() + ".array", false);
+                    default -> {
+                        // Int columns keep their dictionary
+                    }
+                }
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,430 @@
+package iapi.convert_data;
+
+import org.apache.avro.Schema;
+import org.apache.parquet.hadoop.ParquetWriter;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Settings for {@link ParquetWriterPool} and its writers; use the {@code with*} methods to override
+ * the defaults. The defaults match the original hard-coded behaviour except for three, which are on
+ * by default because they cost little and help every reader of the output:
+ * <ul>
+ *     <li>bloom filters on {@link #DEFAULT_BLOOM_FILTER_COLUMNS ID, AnomalyState and SafetyStatus}
+ *     (previously none),</li>
+ *     <li>at most {@link #DEFAULT_PAGE_ROW_COUNT_LIMIT 2000} rows per page (previously parquet-mr's 20000),</li>
+ *     <li>{@link #withOrderedIngest ordered ingest}, which writes files parsed in parallel in file order
+ *     (previously as they were parsed).</li>
+ * </ul>
+ */
+public class ParquetWriterOptions {
+
+    /**
+     * How {@link ParquetWriterPool} picks a writer for a batch.
+     */
+    public enum Routing {
+        /** All batches of one source file go to the same writer. */
+        FILE,
+        /** All rows of one robot go to the same writer; mixed batches are split. */
+        ROBOT_ID,
+        /** Batches are spread over the writers in turn. */
+        ROUND_ROBIN
+    }
+
+    /**
+     * Whether {@link ParquetWriterPool} also writes the batches as Arrow IPC, see {@link ArrowOutput}.
+     */
+    public enum ArrowMode {
+        /** Parquet only. */
+        OFF,
+        /** Arrow IPC next to Parquet. */
+        ALSO,
+        /** Arrow IPC instead of Parquet. */
+        ONLY
+    }
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64; // Batches; about 35 MB at 1000 rows per batch
+    public static final long DEFAULT_OFFER_TIMEOUT_MILLIS = 5000;
+    public static final long DEFAULT_TARGET_FILE_SIZE_BYTES = 300L * 1024 * 1024;
+    public static final int DEFAULT_MAX_OPEN_PARTITIONS = 16;
+    public static final long DEFAULT_PARTITION_IDLE_MILLIS = 60_000;
+    public static final List<String> DEFAULT_BLOOM_FILTER_COLUMNS = List.of("ID", "AnomalyState", "SafetyStatus");
+    public static final int DEFAULT_PAGE_ROW_COUNT_LIMIT = 2000; // 100 s of 20 Hz samples per page
+
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private long offerTimeoutMillis = DEFAULT_OFFER_TIMEOUT_MILLIS;
+    private long targetFileSizeBytes = DEFAULT_TARGET_FILE_SIZE_BYTES;
+    private boolean alignRowGroups;
+    private int writerCount = 1;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private Routing routing = Routing.FILE;
+    private boolean partitioned;
+    private int maxOpenPartitions = DEFAULT_MAX_OPEN_PARTITIONS;
+    private long partitionIdleMillis = DEFAULT_PARTITION_IDLE_MILLIS;
+    private long maxFileAgeMillis; // 0: files are only closed when full
+    private ParquetProfile profile = ParquetProfile.UNCOMPRESSED;
+    private long memoryBudgetBytes = Runtime.getRuntime().maxMemory() / 2;
+    private List<String> bloomFilterColumns = DEFAULT_BLOOM_FILTER_COLUMNS;
+    private int pageRowCountLimit = DEFAULT_PAGE_ROW_COUNT_LIMIT;
+    private boolean timestampMicros;
+    private boolean hadoopFileSystem;
+    private boolean asyncFlush;
+    private boolean avroWritePath;
+    private ArrowMode arrowMode = ArrowMode.OFF;
+    private boolean checkpointing;
+    private boolean orderedIngest = true;
+    private Path arrowSocket;
+    private Path archiveFolder;
+
+    /**
+     * Maximum number of batches waiting for the writer thread; writeBatch blocks when it is full.
+     */
+    public ParquetWriterOptions withQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than 0.");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * How long writeBatch waits on a full queue before logging a warning and checking that the writer is still alive.
+     */
+    public ParquetWriterOptions withOfferTimeoutMillis(long offerTimeoutMillis) {
+        if (offerTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Offer timeout must be greater than 0.");
+        }
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * File size at which the writer rolls over to a new file, measured by the Parquet writer's own
+     * data size (bytes flushed plus bytes buffered for the open row group).
+     */
+    public ParquetWriterOptions withTargetFileSize(long targetFileSizeBytes) {
+        if (targetFileSizeBytes <= 0) {
+            throw new IllegalArgumentException("Target file size must be greater than 0.");
+        }
+        this.targetFileSizeBytes = targetFileSizeBytes;
+        return this;
+    }
+
+    /**
+     * Sizes row groups so that the target file size is a whole number of equal row groups, instead
+     * of full default-sized row groups followed by a small one cut off at rotation.
+     */
+    public ParquetWriterOptions withAlignedRowGroups(boolean alignRowGroups) {
+        this.alignRowGroups = alignRowGroups;
+        return this;
+    }
+
+    /**
+     * Number of parallel writers, each with its own thread, queue and output file series.
+     */
+    public ParquetWriterOptions withWriterCount(int writerCount) {
+        if (writerCount <= 0) {
+            throw new IllegalArgumentException("Writer count must be greater than 0.");
+        }
+        this.writerCount = writerCount;
+        return this;
+    }
+
+    /**
+     * Number of threads FileMerger parses input files with.
+     */
+    public ParquetWriterOptions withParserThreads(int parserThreads) {
+        if (parserThreads <= 0) {
+            throw new IllegalArgumentException("Parser thread count must be greater than 0.");
+        }
+        this.parserThreads = parserThreads;
+        return this;
+    }
+
+    public ParquetWriterOptions withRouting(Routing routing) {
+        this.routing = routing;
+        return this;
+    }
+
+    /**
+     * Writes Hive-style partitions {@code id=<ID>/date=<yyyy-MM-dd>/hour=<HH>/part-<n>.parquet} under
+     * the output folder instead of one flat file series.
+     */
+    public ParquetWriterOptions withPartitioning(boolean partitioned) {
+        this.partitioned = partitioned;
+        return this;
+    }
+
+    /**
+     * Maximum number of partitions a writer keeps open; the least recently used one is closed to make room.
+     */
+    public ParquetWriterOptions withMaxOpenPartitions(int maxOpenPartitions) {
+        if (maxOpenPartitions <= 0) {
+            throw new IllegalArgumentException("Max open partitions must be greater than 0.");
+        }
+        this.maxOpenPartitions = maxOpenPartitions;
+        return this;
+    }
+
+    /**
+     * Time after which an open file is closed and published even if it is not full, so rows are
+     * readable (and their inputs checkpointed) within that time. 0, the default, turns this off.
+     */
+    public ParquetWriterOptions withMaxFileAgeMillis(long maxFileAgeMillis) {
+        if (maxFileAgeMillis < 0) {
+            throw new IllegalArgumentException("Max file age must not be negative.");
+        }
+        this.maxFileAgeMillis = maxFileAgeMillis;
+        return this;
+    }
+
+    /**
+     * Time after which a partition that received no rows is closed.
+     */
+    public ParquetWriterOptions withPartitionIdleMillis(long partitionIdleMillis) {
+        if (partitionIdleMillis <= 0) {
+            throw new IllegalArgumentException("Partition idle time must be greater than 0.");
+        }
+        this.partitionIdleMillis = partitionIdleMillis;
+        return this;
+    }
+
+    /**
+     * Codec and encoding profile of the written files.
+     */
+    public ParquetWriterOptions withProfile(ParquetProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * Memory all open files of a pool may use for buffered row groups; defaults to half the max heap.
+     * Row groups shrink as more files are open, and flush early when the budget is reached.
+     */
+    public ParquetWriterOptions withMemoryBudget(long memoryBudgetBytes) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be greater than 0.");
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        return this;
+    }
+
+    /**
+     * Columns to write a bloom filter for in every row group, so point lookups can skip row groups
+     * whose min/max range includes the value without containing it. Only int and double columns.
+     * parquet-mr leaves the filter out of column chunks that are fully dictionary encoded, as the
+     * dictionary already answers the lookup exactly; it is kept once a chunk falls back to plain.
+     */
+    public ParquetWriterOptions withBloomFilterColumns(List<String> bloomFilterColumns) {
+        for (String column : bloomFilterColumns) {
+            Schema.Field field = RobotDataLayout.SCHEMA.getField(column);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown bloom filter column: " + column);
+            }
+            if (RobotDataLayout.type(field.pos()) == Schema.Type.ARRAY) {
+                throw new IllegalArgumentException("Bloom filters are not supported on array column: " + column);
+            }
+        }
+        this.bloomFilterColumns = List.copyOf(bloomFilterColumns);
+        return this;
+    }
+
+    /**
+     * Maximum rows per page. Smaller pages give tighter page-level min/max statistics in the column
+     * index (on Timestamp in particular), so range queries can skip more of each row group.
+     */
+    public ParquetWriterOptions withPageRowCountLimit(int pageRowCountLimit) {
+        if (pageRowCountLimit <= 0) {
+            throw new IllegalArgumentException("Page row count limit must be greater than 0.");
+        }
+        this.pageRowCountLimit = pageRowCountLimit;
+        return this;
+    }
+
+    /**
+     * Writes Timestamp as an int64 {@code timestamp-micros} with DELTA_BINARY_PACKED encoding instead
+     * of a plain double of epoch seconds. Rows whose timestamp has sub-microsecond digits are skipped.
+     */
+    public ParquetWriterOptions withTimestampMicros(boolean timestampMicros) {
+        this.timestampMicros = timestampMicros;
+        return this;
+    }
+
+    /**
+     * Writes files through Hadoop's {@code FileSystem} instead of {@link NioOutputFile}. The writers'
+     * {@code ParquetConfiguration} should then wrap a Hadoop {@code Configuration}.
+     */
+    public ParquetWriterOptions withHadoopFileSystem(boolean hadoopFileSystem) {
+        this.hadoopFileSystem = hadoopFileSystem;
+        return this;
+    }
+
+    /**
+     * Writes full row groups out on a flush thread per writer while the next row group fills, so
+     * the writer thread does not stall on the final compression and disk write. Holds up to one
+     * extra row group per open file in memory.
+     */
+    public ParquetWriterOptions withAsyncFlush(boolean asyncFlush) {
+        this.asyncFlush = asyncFlush;
+        return this;
+    }
+
+    /**
+     * Writes rows through the Avro view and AvroWriteSupport instead of {@link RobotDataWriteSupport}.
+     * The files are the same; the Avro path is slower and kept for comparison.
+     */
+    public ParquetWriterOptions withAvroWritePath(boolean avroWritePath) {
+        this.avroWritePath = avroWritePath;
+        return this;
+    }
+
+    /**
+     * Keeps a {@link CheckpointStore} in the output directory, so a restarted merger skips the inputs
+     * that were already written and continues the file numbering.
+     */
+    public ParquetWriterOptions withCheckpointing(boolean checkpointing) {
+        this.checkpointing = checkpointing;
+        return this;
+    }
+
+    /**
+     * Folder FileMerger moves input files to once they are processed, so the input folder stays
+     * small; null, the default, leaves them in place.
+     */
+    public ParquetWriterOptions withArchiveFolder(Path archiveFolder) {
+        this.archiveFolder = archiveFolder;
+        return this;
+    }
+
+    /**
+     * Whether FileMerger hands the rows of files it parses in parallel to the writers in file order
+     * (the default), so the output is in time order, or as they are parsed.
+     */
+    public ParquetWriterOptions withOrderedIngest(boolean orderedIngest) {
+        this.orderedIngest = orderedIngest;
+        return this;
+    }
+
+    public ParquetWriterOptions withArrowOutput(ArrowMode arrowMode) {
+        this.arrowMode = arrowMode;
+        return this;
+    }
+
+    /**
+     * Unix domain socket to serve an Arrow IPC stream of the batches on, or null for none. Only used
+     * when Arrow output is on.
+     */
+    public ParquetWriterOptions withArrowSocket(Path arrowSocket) {
+        this.arrowSocket = arrowSocket;
+        return this;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getOfferTimeoutMillis() {
+        return offerTimeoutMillis;
+    }
+
+    public long getTargetFileSizeBytes() {
+        return targetFileSizeBytes;
+    }
+
+    public boolean isAlignRowGroups() {
+        return alignRowGroups;
+    }
+
+    public int getWriterCount() {
+        return writerCount;
+    }
+
+    public Routing getRouting() {
+        return routing;
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    public int getMaxOpenPartitions() {
+        return maxOpenPartitions;
+    }
+
+    public long getMaxFileAgeMillis() {
+        return maxFileAgeMillis;
+    }
+
+    public long getPartitionIdleMillis() {
+        return partitionIdleMillis;
+    }
+
+    public ParquetProfile getProfile() {
+        return profile;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public List<String> getBloomFilterColumns() {
+        return bloomFilterColumns;
+    }
+
+    public int getPageRowCountLimit() {
+        return pageRowCountLimit;
+    }
+
+    public boolean isTimestampMicros() {
+        return timestampMicros;
+    }
+
+    public boolean isHadoopFileSystem() {
+        return hadoopFileSystem;
+    }
+
+    public boolean isAsyncFlush() {
+        return asyncFlush;
+    }
+
+    public boolean isAvroWritePath() {
+        return avroWritePath;
+    }
+
+    public boolean isCheckpointing() {
+        return checkpointing;
+    }
+
+    public int getParserThreads() {
+        return parserThreads;
+    }
+
+    public boolean isOrderedIngest() {
+        return orderedIngest;
+    }
+
+    public Path getArchiveFolder() {
+        return archiveFolder;
+    }
+
+    public ArrowMode getArrowMode() {
+        return arrowMode;
+    }
+
+    public Path getArrowSocket() {
+        return arrowSocket;
+    }
+
+    /**
+     * Largest row group size to write; {@link WriterMemoryManager} lowers it when the memory budget is shared by many files.
+     */
+    public long getRowGroupSize() {
+        long defaultSize = ParquetWriter.DEFAULT_BLOCK_SIZE;
+        if (!alignRowGroups) {
+            return defaultSize;
+        }
+        long rowGroups = (targetFileSizeBytes + defaultSize - 1) / defaultSize;
+        return (targetFileSizeBytes + rowGroups - 1) / rowGroups;
+    }
+}
@@ -0,0 +1,211 @@
+package iapi.convert_data;
+
+import org.apache.parquet.conf.ParquetConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pool of independent {@link ParquetWriterUtil}s, each encoding and compressing on its own thread
+ * into its own file series. Batches are routed to a writer as configured by
+ * {@link ParquetWriterOptions#getRouting()}.
+ *
+ * The writers publish their finished files to one {@link OutputManifest}, which is recovered when
+ * the pool starts.
+ *
+ * With {@link ParquetWriterOptions#getArrowMode() Arrow output} on, every batch is first written
+ * to an {@link ArrowOutput} in the same directory, on the calling thread, and with
+ * {@link ParquetWriterOptions.ArrowMode#ONLY ONLY} it goes no further. A source is then committed
+ * once the Arrow files with its rows are renamed into place.
+ */
+public class ParquetWriterPool {
+
+    private static final int ROBOT_ID = RobotDataLayout.position("ID");
+
+    private final List<ParquetWriterUtil> writers = new ArrayList<>();
+    private final ParquetWriterOptions.Routing routing;
+    private final AtomicInteger nextWriter = new AtomicInteger();
+    private final WriterMemoryManager memoryManager;
+    private final OutputManifest manifest;
+    private final SourceTracker sources = new SourceTracker();
+    private final ArrowOutput arrowOutput; // Null when Arrow output is off
+    private final boolean parquetOutput;
+
+    private ParquetWriterPool(String outputFilePath, ParquetWriterOptions options) throws IOException {
+        this.routing = options.getRouting();
+        this.memoryManager = new WriterMemoryManager(options);
+        this.manifest = new OutputManifest(ParquetWriterUtil.outputDirectory(outputFilePath).toPath());
+        manifest.recover();
+        this.parquetOutput = options.getArrowMode() != ParquetWriterOptions.ArrowMode.ONLY;
+        if (options.getArrowMode() != ParquetWriterOptions.ArrowMode.OFF) {
+            String name = new File(outputFilePath).getName();
+            String prefix = (name.endsWith(".parquet") ? name.substring(0, name.length() - ".parquet".length()) : name) + "_";
+            arrowOutput = new ArrowOutput(ParquetWriterUtil.outputDirectory(outputFilePath), prefix, options,
+                    parquetOutput ? null : sources);
+        } else {
+            arrowOutput = null;
+        }
+    }
+
+    public static ParquetWriterPool start(String outputFilePath, ParquetConfiguration conf, ParquetWriterOptions options) throws IOException {
+        return start(outputFilePath, conf, options, CheckpointStore.inMemory());
+    }
+
+    /**
+     * Creates the pool and starts its writer threads.
+     *
+     * @param checkpoint Where the file series keep their numbering across restarts.
+     */
+    public static ParquetWriterPool start(String outputFilePath, ParquetConfiguration conf, ParquetWriterOptions options,
+                                          CheckpointStore checkpoint) throws IOException {
+        ParquetWriterPool pool = new ParquetWriterPool(outputFilePath, options);
+        try {
+            for (int i = 0; i < options.getWriterCount(); i++) {
+                ParquetWriterUtil writer = new ParquetWriterUtil(outputFilePath, conf, options, i, pool.memoryManager,
+                        pool.manifest, pool.sources, checkpoint);
+                pool.writers.add(writer);
+                writer.start();
+            }
+        } catch (IOException e) {
+            pool.shutdown(); // Close the writers that did start
+            throw e;
+        }
+        System.out.printf("Started %d Parquet writer(s), routing by %s.%n", pool.writers.size(), pool.routing);
+        return pool;
+    }
+
+    /**
+     * Queues a batch on the writer chosen by the routing policy. The batch is owned by the pool from
+     * here on and must not be reused.
+     *
+     * @param sourceName Name of the file the batch was parsed from; used for {@code FILE} routing and,
+     *                   unless the batch already has one, as its {@link RobotDataBatch#getSource() source}.
+     */
+    public void writeBatch(String sourceName, RobotDataBatch batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batch.getSource() == null) {
+            batch.setSource(sourceName);
+        }
+        if (arrowOutput != null) {
+            arrowOutput.write(batch);
+        }
+        if (!parquetOutput) {
+            return;
+        }
+        int count = writers.size();
+        switch (routing) {
+            case FILE -> writers.get(Math.floorMod(sourceName.hashCode(), count)).writeBatch(batch);
+            case ROUND_ROBIN -> writers.get(Math.floorMod(nextWriter.getAndIncrement(), count)).writeBatch(batch);
+            case ROBOT_ID -> writeByRobotId(batch);
+        }
+    }
+
+    private void writeByRobotId(RobotDataBatch batch) throws IOException {
+        int count = writers.size();
+        int[] ids = batch.intColumn(ROBOT_ID);
+        int first = Math.floorMod(ids[0], count);
+        boolean mixed = false;
+        for (int row = 1; row < batch.size() && !mixed; row++) {
+            mixed = Math.floorMod(ids[row], count) != first;
+        }
+        if (!mixed) {
+            writers.get(first).writeBatch(batch);
+            return;
+        }
+
+        // Rows for different writers; split the batch so every robot stays on one writer
+        RobotDataBatch[] parts = new RobotDataBatch[count];
+        for (int row = 0; row < batch.size(); row++) {
+            int writer = Math.floorMod(ids[row], count);
+            if (parts[writer] == null) {
+                parts[writer] = new RobotDataBatch(batch.size());
+                parts[writer].setSource(batch.getSource());
+            }
+            batch.copyRowTo(row, parts[writer]);
+        }
+        for (int writer = 0; writer < count; writer++) {
+            if (parts[writer] != null) {
+                writers.get(writer).writeBatch(parts[writer]);
+            }
+        }
+    }
+
+    /**
+     * Sets the listener that is called with the name of a source once it is {@link #finishSource
+     * finished} and all its rows are in published files. It is called on a writer thread, or on the
+     * thread that finishes the source.
+     */
+    public void onSourceCommitted(Consumer<String> listener) {
+        sources.setListener(listener);
+    }
+
+    /**
+     * Marks that every batch of the source has been passed to {@link #writeBatch}.
+     */
+    public void finishSource(String sourceName) {
+        sources.finish(sourceName);
+    }
+
+    /**
+     * Marks that not every row of the source could be passed to {@link #writeBatch}, so it is never committed.
+     */
+    public void failSource(String sourceName) {
+        sources.fail(sourceName);
+    }
+
+    public OutputManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * @return The Arrow output, or null when Arrow output is off.
+     */
+    public ArrowOutput getArrowOutput() {
+        return arrowOutput;
+    }
+
+    public WriterMemoryManager getMemoryManager() {
+        return memoryManager;
+    }
+
+    public List<ParquetWriterUtil> getWriters() {
+        return writers;
+    }
+
+    /**
+     * Shuts down every writer, writing out everything still queued. Safe to call more than once.
+     */
+    public void shutdown() {
+        for (ParquetWriterUtil writer : writers) {
+            writer.shutdown();
+        }
+        if (arrowOutput != null) {
+            try {
+                arrowOutput.close();
+            } catch (IOException e) {
+                System.err.println("Error closing Arrow output: " + e.getMessage());
+            }
+        }
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (ParquetWriterUtil writer : writers) {
+            if (summary.length() > 0) {
+                summary.append(System.lineSeparator());
+            }
+            summary.append(writer.utilizationSummary()).append(' ').append(writer.queueSummary());
+        }
+        summary.append(System.lineSeparator()).append(memoryManager.summary());
+        if (arrowOutput != null) {
+            summary.append(System.lineSeparator()).append("Arrow output: ").append(arrowOutput.getRowsWritten()).append(" rows");
+        }
+        return summary.toString();
+    }
+}
@@ -1,160 +1,404 @@
 package iapi.convert_data;
 
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.Path;
-import org.apache.parquet.avro.AvroParquetWriter;
-import org.apache.parquet.hadoop.ParquetFileWriter;
-import org.apache.parquet.hadoop.ParquetWriter;
-import org.apache.parquet.hadoop.util.HadoopOutputFile;
+import org.apache.parquet.conf.ParquetConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * One Parquet writer thread with its own queue and output file series. Several of them are run
+ * side by side by {@link ParquetWriterPool}.
+ *
+ * In partitioned mode rows are written Hive-style to
+ * {@code id=<ID>/date=<yyyy-MM-dd>/hour=<HH>/part-<n>.parquet} (UTC, from the Timestamp field), with
+ * one open file per active partition. The least recently used partitions are closed when too many
+ * are open, and partitions that receive no rows for a while are closed as well.
+ *
+ * With a {@link ParquetWriterOptions#getMaxFileAgeMillis() max file age}, files that have been open
+ * for longer are closed, in either mode; their series continue with a new file on the next row.
+ *
+ * With async flushing, full row groups of all this writer's files are written out by one extra
+ * flush thread, in the order they filled up.
+ *
+ * Every queued batch holds its {@link RobotDataBatch#getSource() source} in the {@link SourceTracker}
+ * until it has been written to a file, which then holds it until it is published. If the writer
+ * thread fails, the files that took rows of the failing batch are deleted instead of published, and
+ * the sources of that batch and of every batch still queued fail.
+ */
 public class ParquetWriterUtil {
 
-    private static volatile ParquetWriterUtil instance;
+    private static final int ID = RobotDataLayout.position("ID");
+    private static final int TIMESTAMP = RobotDataLayout.position("Timestamp");
+    private static final String SERIES_KEY = "series:"; // Checkpoint key prefix of the last file number of a series
+    private static final DateTimeFormatter PARTITION_FORMAT =
+            DateTimeFormatter.ofPattern("'date='yyyy-MM-dd'/hour='HH").withZone(ZoneOffset.UTC);
 
-    private ParquetWriter<RobotData> writer;
-    private final String outputFilePath;
-    private final Configuration conf;
-    private final long maxFileSizeBytes;
-    private final AtomicLong currentFileSize = new AtomicLong(0);
-    private int fileIndex = 1;
+    private final ParquetConfiguration conf;
+    private final ParquetWriterOptions options;
+    private final WriterMemoryManager memoryManager;
+    private final OutputManifest manifest;
+    private final SourceTracker sources;
+    private final CheckpointStore checkpoint;
+    private final File outputDirectory;
+    private final String filePrefix; // Name prefix of the flat file series
 
-    private final BlockingQueue<RobotData> recordQueue = new LinkedBlockingQueue<>();
+    // Open file series by partition ("" when not partitioned), least recently used first
+    private final LinkedHashMap<String, ParquetFileSeries> openSeries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong partitionsClosed = new AtomicLong();
+
+    // Bounded so parser threads are throttled to the writer's pace instead of filling the heap
+    private final BlockingQueue<RobotDataBatch> recordQueue;
     private volatile boolean isRunning = true;
+    private volatile Exception failure; // Why the writer thread stopped, if it failed
     private final Thread writerThread;
+    private final ExecutorService flushExecutor; // Null unless flushing asynchronously
 
-    private ParquetWriterUtil(String outputFilePath, Configuration conf, long maxFileSizeBytes) throws IOException {
-        this.outputFilePath = outputFilePath;
-        this.conf = conf;
-        this.maxFileSizeBytes = maxFileSizeBytes;
-        initializeWriter();
+    private static final int MAX_DRAIN_BATCHES = 16; // Batches written per lock acquisition
+    private static final long IDLE_POLL_MILLIS = 200; // How often a parked writer re-checks isRunning
 
-        // Start the asynchronous writer thread
-        writerThread = new Thread(this::processQueue);
-        writerThread.setDaemon(true);
-        writerThread.start();
-    }
+    // Writer thread utilization
+    private final AtomicLong idleNanos = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private volatile long cpuNanos = -1; // Writer thread CPU time, recorded when the thread exits
+    private volatile long flushCpuNanos; // Flush thread CPU time, recorded at shutdown
+    private volatile long maxBatchNanos; // Slowest single batch, row group flushes included
 
-    public static ParquetWriterUtil getInstance(String outputFilePath, Configuration conf, long maxFileSizeBytes) throws IOException {
-        if (instance == null) {
-            synchronized (ParquetWriterUtil.class) {
-                if (instance == null) {
-                    instance = new ParquetWriterUtil(outputFilePath, conf, maxFileSizeBytes);}
-            }
-        }
-        return instance;
-    }
+    // Backpressure on writeBatch callers
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong blockedOffers = new AtomicLong();
+    private volatile int maxQueueDepth;
+
+    /**
+     * @param writerId      Index of this writer in its pool; used in the file names when the pool has more than one writer.
+     * @param memoryManager Memory budget shared with the other writers of the pool.
+     * @param manifest      Manifest of {@link #outputDirectory(String)}, shared with the other writers of the pool.
+     * @param sources       Tracker of the sources of the pool's batches.
+     * @param checkpoint    Where the numbering of the flat file series is kept.
+     */
+    ParquetWriterUtil(String outputFilePath, ParquetConfiguration conf, ParquetWriterOptions options, int writerId,
+                      WriterMemoryManager memoryManager, OutputManifest manifest, SourceTracker sources,
+                      CheckpointStore checkpoint) throws IOException {
+        this.conf = conf;
+        this.options = options;
+        this.memoryManager = memoryManager;
+        this.manifest = manifest;
+        this.sources = sources;
+        this.checkpoint = checkpoint;
+        this.recordQueue = new ArrayBlockingQueue<>(options.getQueueCapacity());
 
-    private void initializeWriter() throws IOException {
-        String newOutputPath = generateNewOutputPath();
-        Path path = new Path(newOutputPath);
+        this.outputDirectory = outputDirectory(outputFilePath);
+        String folderName = new File(outputFilePath).getName();
+        if (folderName.endsWith(".parquet")) {
+            folderName = folderName.substring(0, folderName.lastIndexOf('.')); // Remove ".parquet"
+        }
+        String seriesSuffix = options.getWriterCount() > 1 ? "_w" + writerId : ""; // Keeps the file series of pooled writers apart
+        this.filePrefix = folderName + seriesSuffix + "_";
 
-        File outputFile = new File(newOutputPath);
-        if (outputFile.exists() && outputFile.length() > 0) {
-            System.out.printf("File '%s' already exists and is not empty. Skipping initialization.%n", newOutputPath);
-            return; // Do not overwrite an existing non-empty file
+        if (options.isAsyncFlush()) {
+            flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "parquet-flush-" + writerId);
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            flushExecutor = null;
         }
 
-        writer = AvroParquetWriter.<RobotData>builder(HadoopOutputFile.fromPath(path, conf))
-                .withSchema(RobotData.getClassSchema())
-                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
-                .build();
+        writerThread = new Thread(this::processQueue, "parquet-writer-" + writerId);
+        writerThread.setDaemon(true);
+    }
 
-        System.out.println("Initialized Parquet writer for file: " + newOutputPath);
+    /**
+     * Starts the writer thread. Batches are only accepted once it runs.
+     */
+    void start() {
+        writerThread.start();
     }
 
-    private String generateNewOutputPath() {
-        Path outputPath = new Path(outputFilePath);
-        String folderName = outputPath.getName();
+    /**
+     * Returns the directory the files for {@code outputFilePath} are written to: its parent if it
+     * names a .parquet file, otherwise the path itself.
+     */
+    public static File outputDirectory(String outputFilePath) {
+        File outputPath = new File(outputFilePath);
+        return outputPath.getName().endsWith(".parquet") ? outputPath.getAbsoluteFile().getParentFile() : outputPath;
+    }
 
-        // Handle cases where outputFilePath ends with ".parquet"
-        if (folderName.endsWith(".parquet")) {
-            folderName = folderName.substring(0, folderName.lastIndexOf('.')); // Remove ".parquet"
-            outputPath = outputPath.getParent(); // Get the parent directory
+    /**
+     * Queues a batch for writing. The batch is owned by the writer from here on and must not be reused.
+     *
+     * Blocks while the queue is full. Every {@code offerTimeoutMillis} of waiting a warning is logged
+     * and the writer thread is checked, so a dead writer fails callers instead of blocking them forever.
+     *
+     * @throws InterruptedIOException if the calling thread is interrupted while waiting.
+     * @throws IOException            if the writer is shut down or has failed; the failure is the cause.
+     */
+    public void writeBatch(RobotDataBatch batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
         }
-
-        // Create the directory if it does not exist
-        File directory = new File(outputPath.toString());
-        if (!directory.exists()) {
-            boolean created = directory.mkdirs(); // Create directories
-            if (created) {
-                System.out.println("Created directory: " + directory.getAbsolutePath());
-            } else {
-                System.err.println("Failed to create directory: " + directory.getAbsolutePath());
+        long start = System.nanoTime();
+        boolean queued = false;
+        if (batch.getSource() != null) {
+            sources.acquire(batch.getSource());
+        }
+        try {
+            while (true) {
+                if (!isRunning || !writerThread.isAlive()) {
+                    throw new IOException("Cannot write to a closed writer.", failure);
+                }
+                if (recordQueue.offer(batch, options.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                    // Stopped meanwhile; unless the writer thread already took the batch, it never will
+                    if (!isRunning && recordQueue.remove(batch)) {
+                        throw new IOException("Cannot write to a closed writer.", failure);
+                    }
+                    queued = true;
+                    break;
+                }
+                System.err.printf("Parquet writer queue full (%d batches), blocked for %d ms.%n",
+                        recordQueue.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Parquet writer queue.");
+        } finally {
+            if (!queued && batch.getSource() != null) {
+                sources.fail(batch.getSource());
+                sources.release(batch.getSource());
+            }
+            recordBlockedTime(System.nanoTime() - start);
         }
-
-        // Generate the new output file path
-        return outputPath + "/" + folderName + "_" + fileIndex + ".parquet";
     }
 
-    public void writeRecord(RobotData record) {
-        if (!isRunning) {
-            throw new IllegalStateException("Cannot write to a closed writer.");
+    private void recordBlockedTime(long waitedNanos) {
+        int depth = recordQueue.size();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth; // Racy but monotonic enough for a high-water mark
         }
-        recordQueue.offer(record);
-    }
-
-    public synchronized void writeBatch(List<RobotData> records) throws IOException {
-        for (RobotData record : records) {
-            writeRecord(record);
+        if (waitedNanos >= TimeUnit.MILLISECONDS.toNanos(1)) {
+            blockedNanos.addAndGet(waitedNanos);
+            blockedOffers.incrementAndGet();
         }
     }
 
+    /**
+     * Writer loop. Parks on the queue while it is empty, then drains up to {@link #MAX_DRAIN_BATCHES}
+     * batches at once and writes them under a single lock acquisition. Exits once the writer is shut
+     * down and the queue is empty, or when writing fails.
+     */
     private void processQueue() {
+        List<RobotDataBatch> drained = new ArrayList<>(MAX_DRAIN_BATCHES);
         try {
-            while (isRunning || !recordQueue.isEmpty()) {
-                RobotData record = recordQueue.poll(); // Fetch a record from the queue
-                if (record != null) {
-                    writeRecordToFile(record);
+            while (true) {
+                long idleStart = System.nanoTime();
+                RobotDataBatch first = recordQueue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                long busyStart = System.nanoTime();
+                idleNanos.addAndGet(busyStart - idleStart);
+                closeIdlePartitions();
+                closeAgedFiles();
+                if (first == null) {
+                    if (!isRunning) {
+                        break;
+                    }
+                    continue;
                 }
+
+                drained.add(first);
+                recordQueue.drainTo(drained, MAX_DRAIN_BATCHES - 1);
+                writeBatchesToFile(drained);
+                busyNanos.addAndGet(System.nanoTime() - busyStart);
             }
+        } catch (InterruptedException e) {
+            System.err.println("Writer thread interrupted with " + recordQueue.size() + " batches still queued.");
+            Thread.currentThread().interrupt();
+            dropUnwritten(drained);
         } catch (Exception e) {
+            failure = e;
             System.err.println("Error while processing record queue: " + e.getMessage());
             e.printStackTrace();
+            dropUnwritten(drained);
         } finally {
             closeWriter();
+            cpuNanos = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
         }
     }
 
-    private synchronized void writeRecordToFile(RobotData record) throws IOException {
-        if (currentFileSize.get() >= maxFileSizeBytes) {
-            rotateFile();
+    /**
+     * Stops accepting batches and fails the sources of the unwritten ones and of everything still queued.
+     */
+    private void dropUnwritten(List<RobotDataBatch> unwritten) {
+        isRunning = false;
+        recordQueue.drainTo(unwritten); // After isRunning is cleared, so writeBatch takes back anything offered later
+        for (RobotDataBatch batch : unwritten) {
+            if (batch.getSource() != null) {
+                sources.fail(batch.getSource());
+                sources.release(batch.getSource());
+            }
+        }
+        if (!unwritten.isEmpty()) {
+            System.err.printf("Dropped %d unwritten batches.%n", unwritten.size());
         }
-        writer.write(record);
-        currentFileSize.addAndGet(estimateRecordSize(record));
+        unwritten.clear();
     }
 
-    private long estimateRecordSize(RobotData record) {
-        return record.toString().getBytes().length; // Replace with better estimation if needed
+    /**
+     * Writes the batches in order, removing each from the list once written. If one fails, the files
+     * that took rows of it are {@link ParquetFileSeries#fail failed}, and it and the batches after it
+     * are left in the list.
+     */
+    private synchronized void writeBatchesToFile(List<RobotDataBatch> batches) throws IOException {
+        Set<ParquetFileSeries> written = new HashSet<>(); // Series that took rows of the current batch
+        for (Iterator<RobotDataBatch> iterator = batches.iterator(); iterator.hasNext(); ) {
+            RobotDataBatch batch = iterator.next();
+            long start = System.nanoTime();
+            RobotDataBatch.Cursor cursor = batch.cursor();
+            written.clear();
+            try {
+                if (options.isPartitioned()) {
+                    writePartitioned(batch, cursor, written);
+                } else {
+                    ParquetFileSeries series = seriesFor("");
+                    series.setSource(batch.getSource());
+                    written.add(series);
+                    for (int row = 0; row < batch.size(); row++) {
+                        series.write(cursor.moveTo(row));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                written.forEach(ParquetFileSeries::fail);
+                throw e;
+            }
+            if (batch.getSource() != null) {
+                sources.release(batch.getSource()); // Now held by the files it was written to
+            }
+            iterator.remove();
+            rowsWritten.addAndGet(batch.size());
+            batchesWritten.incrementAndGet();
+            maxBatchNanos = Math.max(maxBatchNanos, System.nanoTime() - start);
+        }
     }
 
-    private void rotateFile() throws IOException {
-        closeWriter();
-        fileIndex++;
-        initializeWriter();
-        currentFileSize.set(0);
-        System.out.println("Max file size reached. Created new Parquet file: " + generateNewOutputPath());
+    private void writePartitioned(RobotDataBatch batch, RobotDataBatch.Cursor cursor, Set<ParquetFileSeries> written)
+            throws IOException {
+        int[] ids = batch.intColumn(ID);
+        double[] timestamps = batch.doubleColumn(TIMESTAMP);
+        ParquetFileSeries series = null;
+        int currentId = 0;
+        long currentHour = Long.MIN_VALUE;
+        for (int row = 0; row < batch.size(); row++) {
+            long hour = Math.floorDiv((long) Math.floor(timestamps[row]), 3600L);
+            if (series == null || ids[row] != currentId || hour != currentHour) { // Rows mostly arrive in runs of one partition
+                currentId = ids[row];
+                currentHour = hour;
+                series = seriesFor("id=" + currentId + "/" + PARTITION_FORMAT.format(Instant.ofEpochSecond(hour * 3600L)));
+                series.setSource(batch.getSource());
+                written.add(series);
+            }
+            series.write(cursor.moveTo(row));
+        }
     }
 
-    public synchronized void closeWriter() {
-        if (writer != null) {
-            try {
-                writer.close();
-                System.out.println("Closed Parquet writer.");
-            } catch (IOException e) {
-                System.err.println("Error closing Parquet writer: " + e.getMessage());
-                e.printStackTrace();
+    private ParquetFileSeries seriesFor(String partition) {
+        ParquetFileSeries series = openSeries.get(partition);
+        if (series == null) {
+            if (partition.isEmpty()) {
+                series = new ParquetFileSeries(outputDirectory, filePrefix, conf, options, memoryManager, flushExecutor, manifest,
+                        sources, checkpoint, SERIES_KEY + filePrefix);
+            } else {
+                series = new ParquetFileSeries(new File(outputDirectory, partition), "part-", conf, options, memoryManager,
+                        flushExecutor, manifest, sources, null, null); // Few files per partition; not worth a checkpoint key each
+                while (openSeries.size() >= options.getMaxOpenPartitions()) {
+                    closeEldestPartition();
+                }
+            }
+            openSeries.put(partition, series);
+        }
+        return series;
+    }
+
+    private void closeEldestPartition() {
+        Iterator<ParquetFileSeries> eldest = openSeries.values().iterator();
+        eldest.next().close();
+        eldest.remove();
+        partitionsClosed.incrementAndGet();
+    }
+
+    /**
+     * Closes partitions that have not received a row for the configured idle time.
+     */
+    private synchronized void closeIdlePartitions() {
+        if (!options.isPartitioned()) {
+            return;
+        }
+        long idleLimit = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(options.getPartitionIdleMillis());
+        Iterator<ParquetFileSeries> iterator = openSeries.values().iterator();
+        while (iterator.hasNext()) {
+            ParquetFileSeries series = iterator.next();
+            if (series.getLastWriteNanos() - idleLimit < 0) {
+                series.close();
+                iterator.remove();
+                partitionsClosed.incrementAndGet();
             }
         }
     }
 
+    /**
+     * Closes the files that have been open for longer than the max file age.
+     */
+    private synchronized void closeAgedFiles() {
+        if (options.getMaxFileAgeMillis() == 0) {
+            return;
+        }
+        long openedLimit = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(options.getMaxFileAgeMillis());
+        for (ParquetFileSeries series : openSeries.values()) {
+            if (series.isOpen() && series.getOpenedNanos() - openedLimit < 0) {
+                series.close();
+            }
+        }
+    }
+
+    /**
+     * Closes every open file.
+     */
+    public synchronized void closeWriter() {
+        for (ParquetFileSeries series : openSeries.values()) {
+            series.close();
+        }
+        openSeries.clear();
+    }
+
+    public synchronized int getOpenPartitions() {
+        return options.isPartitioned() ? openSeries.size() : 0;
+    }
+
+    public long getPartitionsClosed() {
+        return partitionsClosed.get();
+    }
+
+    /**
+     * Stops accepting batches, waits for the writer thread to write everything still queued and
+     * closes the current file. Safe to call more than once.
+     */
     public void shutdown() {
         isRunning = false;
         try {
@@ -164,15 +408,106 @@ public class ParquetWriterUtil {
             e.printStackTrace();
         }
         closeWriter();
-        System.out.println("Shutdown complete. Parquet writer closed.");
+        shutdownFlushExecutor();
+        System.out.printf("Shutdown complete. Parquet writer closed. %s %s%n", utilizationSummary(), queueSummary());
     }
 
-    static {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            if (instance != null) {
-                instance.shutdown();
-                System.out.println("Shutdown hook executed. Parquet writer closed.");
-            }
-        }));
+    private void shutdownFlushExecutor() {
+        if (flushExecutor == null || flushExecutor.isShutdown()) {
+            return;
+        }
+        try {
+            // Runs after every flush queued by closeWriter, so it sees the thread's full CPU time
+            flushCpuNanos = flushExecutor.submit(() -> ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Could not read the flush thread's CPU time: " + e.getCause());
+        }
+        flushExecutor.shutdown();
+    }
+
+    public long getIdleNanos() {
+        return idleNanos.get();
+    }
+
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    /**
+     * CPU time used by the writer thread and its flush thread, including encoding and compression.
+     * Only known once the writer has been shut down; -1 before that or if the JVM does not measure
+     * thread CPU time.
+     */
+    public long getCpuNanos() {
+        return cpuNanos < 0 ? cpuNanos : cpuNanos + flushCpuNanos;
+    }
+
+    /**
+     * Longest time the writer thread spent on a single batch. Spikes when a row group is flushed on the writer thread.
+     */
+    public long getMaxBatchNanos() {
+        return maxBatchNanos;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    /**
+     * Fraction of the writer thread's time spent writing rather than waiting for batches.
+     */
+    public double getUtilization() {
+        long busy = busyNanos.get();
+        long total = busy + idleNanos.get();
+        return total == 0 ? 0.0 : (double) busy / total;
+    }
+
+    public int getQueueDepth() {
+        return recordQueue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return recordQueue.size() + recordQueue.remainingCapacity();
+    }
+
+    /**
+     * Total time writeBatch callers spent waiting for room in the queue.
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.get();
+    }
+
+    /**
+     * Number of writeBatch calls that had to wait for room in the queue.
+     */
+    public long getBlockedOffers() {
+        return blockedOffers.get();
+    }
+
+    public String queueSummary() {
+        return String.format("Queue: depth %d/%d (max %d), %d blocked offers, blocked %d ms.",
+                getQueueDepth(), getQueueCapacity(), getMaxQueueDepth(), getBlockedOffers(),
+                TimeUnit.NANOSECONDS.toMillis(getBlockedNanos()));
+    }
+
+    public String utilizationSummary() {
+        String summary = String.format("Writer %s: %d rows in %d batches, busy %d ms, idle %d ms (%.1f%% utilization), "
+                        + "slowest batch %.1f ms.",
+                writerThread.getName(), getRowsWritten(), getBatchesWritten(), TimeUnit.NANOSECONDS.toMillis(getBusyNanos()),
+                TimeUnit.NANOSECONDS.toMillis(getIdleNanos()), getUtilization() * 100, getMaxBatchNanos() / 1e6);
+        if (options.isPartitioned()) {
+            summary += String.format(" Partitions: %d open, %d closed.", getOpenPartitions(), getPartitionsClosed());
+        }
+        return summary;
     }
 }
@@ -0,0 +1,127 @@
+package iapi.convert_data;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.FixedSizeListVector;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads {@link RobotDataBatch}es into Arrow vectors. The columns have the RobotData field names:
+ * ID as int32, the other scalars as float64, the vector fields as fixed-size lists of float64 and
+ * Timestamp as float64 epoch seconds or, for timestamp-micros output, a UTC timestamp in microseconds.
+ *
+ * One {@link VectorSchemaRoot} is reused for every batch, so a loaded batch is only valid until the
+ * next {@link #load}. Not thread-safe.
+ */
+public class RobotDataArrowConverter implements AutoCloseable {
+
+    private static final int TIMESTAMP = RobotDataLayout.position("Timestamp");
+
+    private final VectorSchemaRoot root;
+    private final boolean timestampMicros;
+
+    public RobotDataArrowConverter(BufferAllocator allocator, boolean timestampMicros) {
+        this.timestampMicros = timestampMicros;
+        this.root = VectorSchemaRoot.create(schema(timestampMicros), allocator);
+    }
+
+    public static Schema schema(boolean timestampMicros) {
+        ArrowType float64 = new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+        List<Field> fields = new ArrayList<>();
+        for (org.apache.avro.Schema.Field field : RobotDataLayout.SCHEMA.getFields()) {
+            int pos = field.pos();
+            Field arrowField = switch (RobotDataLayout.type(pos)) {
+                case INT -> Field.notNullable(field.name(), new ArrowType.Int(32, true));
+                case DOUBLE -> Field.notNullable(field.name(), timestampMicros && pos == TIMESTAMP
+                        ? new ArrowType.Timestamp(TimeUnit.MICROSECOND, "UTC") : float64);
+                default -> new Field(field.name(), FieldType.notNullable(new ArrowType.FixedSizeList(RobotDataLayout.width(pos))),
+                        List.of(Field.notNullable("item", float64)));
+            };
+            fields.add(arrowField);
+        }
+        return new Schema(fields);
+    }
+
+    /**
+     * Replaces the contents of the root with the batch.
+     *
+     * @return The root, valid until the next call.
+     */
+    public VectorSchemaRoot load(RobotDataBatch batch) {
+        int rows = batch.size();
+        for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+            FieldVector vector = root.getVector(pos);
+            switch (RobotDataLayout.type(pos)) {
+                case INT -> {
+                    IntVector ints = (IntVector) vector;
+                    int[] values = batch.intColumn(pos);
+                    ints.allocateNew(rows);
+                    for (int row = 0; row < rows; row++) {
+                        ints.set(row, values[row]);
+                    }
+                }
+                case DOUBLE -> {
+                    double[] values = batch.doubleColumn(pos);
+                    if (vector instanceof TimeStampMicroTZVector micros) {
+                        micros.allocateNew(rows);
+                        for (int row = 0; row < rows; row++) {
+                            micros.set(row, CSVDataCleaner.toEpochMicros(values[row]));
+                        }
+                    } else {
+                        Float8Vector doubles = (Float8Vector) vector;
+                        doubles.allocateNew(rows);
+                        for (int row = 0; row < rows; row++) {
+                            doubles.set(row, values[row]);
+                        }
+                    }
+                }
+                default -> loadVectors((FixedSizeListVector) vector, batch, pos);
+            }
+            vector.setValueCount(rows);
+        }
+        root.setRowCount(rows);
+        return root;
+    }
+
+    private static void loadVectors(FixedSizeListVector lists, RobotDataBatch batch, int pos) {
+        int rows = batch.size();
+        int width = RobotDataLayout.width(pos);
+        double[] values = batch.vectorColumn(pos);
+        lists.setInitialCapacity(rows);
+        lists.allocateNew();
+        Float8Vector elements = (Float8Vector) lists.getDataVector();
+        for (int row = 0; row < rows; row++) {
+            lists.setNotNull(row);
+            int offset = batch.vectorOffset(pos, row);
+            for (int i = 0; i < width; i++) {
+                elements.set(row * width + i, values[offset + i]);
+            }
+        }
+        elements.setValueCount(rows * width);
+    }
+
+    public VectorSchemaRoot getRoot() {
+        return root;
+    }
+
+    public boolean isTimestampMicros() {
+        return timestampMicros;
+    }
+
+    @Override
+    public void close() {
+        root.close();
+    }
+}
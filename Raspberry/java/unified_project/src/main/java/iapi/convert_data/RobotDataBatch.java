@@ -0,0 +1,193 @@
+package iapi.convert_data;
+
+import org.apache.avro.generic.IndexedRecord;
+
+/**
+ * Columnar batch of RobotData samples: one primitive array per schema field plus a row count. This
+ * is the unit of work handed from the CSV parser to the Parquet writer, so no per-row objects are
+ * created between the two stages.
+ *
+ * Int and double fields are stored as {@code int[capacity]} / {@code double[capacity]} columns.
+ * Array fields are stored as one {@code double[capacity * width]} column each, row after row.
+ *
+ * A row is filled in place at index {@link #size()} and only becomes part of the batch when
+ * {@link #commitRow()} is called, so a row that fails validation halfway is simply overwritten.
+ * Once a batch is handed to a writer it is owned by that writer and must not be modified.
+ */
+public class RobotDataBatch {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final int[][] intColumns = new int[RobotDataLayout.FIELD_COUNT][];
+    private final double[][] doubleColumns = new double[RobotDataLayout.FIELD_COUNT][];
+    private final double[][] vectorColumns = new double[RobotDataLayout.FIELD_COUNT][];
+    private int size;
+    private String source; // Name of the file the rows came from
+
+    public RobotDataBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RobotDataBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+            switch (RobotDataLayout.type(pos)) {
+                case INT -> intColumns[pos] = new int[capacity];
+                case DOUBLE -> doubleColumns[pos] = new double[capacity];
+                default -> vectorColumns[pos] = new double[capacity * RobotDataLayout.width(pos)];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Adds the row filled at index {@link #size()} to the batch.
+     */
+    public void commitRow() {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full (" + capacity + " rows)");
+        }
+        size++;
+    }
+
+    /**
+     * Appends a copy of row {@code row} to {@code target}.
+     */
+    public void copyRowTo(int row, RobotDataBatch target) {
+        int targetRow = target.size;
+        for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+            switch (RobotDataLayout.type(pos)) {
+                case INT -> target.intColumns[pos][targetRow] = intColumns[pos][row];
+                case DOUBLE -> target.doubleColumns[pos][targetRow] = doubleColumns[pos][row];
+                default -> {
+                    int width = RobotDataLayout.width(pos);
+                    System.arraycopy(vectorColumns[pos], row * width, target.vectorColumns[pos], targetRow * width, width);
+                }
+            }
+        }
+        target.commitRow();
+    }
+
+    public void setInt(int pos, int row, int value) {
+        intColumns[pos][row] = value;
+    }
+
+    public void setDouble(int pos, int row, double value) {
+        doubleColumns[pos][row] = value;
+    }
+
+    /**
+     * Values of an int field, valid for indexes below {@link #size()}.
+     */
+    public int[] intColumn(int pos) {
+        return intColumns[pos];
+    }
+
+    /**
+     * Values of a double field, valid for indexes below {@link #size()}.
+     */
+    public double[] doubleColumn(int pos) {
+        return doubleColumns[pos];
+    }
+
+    /**
+     * Elements of an array field; row {@code r} occupies {@code [r * width, (r + 1) * width)}.
+     */
+    public double[] vectorColumn(int pos) {
+        return vectorColumns[pos];
+    }
+
+    public int vectorOffset(int pos, int row) {
+        return row * RobotDataLayout.width(pos);
+    }
+
+    /**
+     * Returns a cursor for reading the rows of this batch one at a time.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Movable {@link RobotDataRow} over one row of the batch. Its {@link #asRecord()} view follows
+     * the cursor, so one cursor and view can be reused for every row.
+     */
+    public class Cursor implements RobotDataRow {
+
+        private int row;
+        private RobotDataView view;
+
+        public Cursor moveTo(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " outside batch of " + size + " rows");
+            }
+            this.row = row;
+            return this;
+        }
+
+        public int row() {
+            return row;
+        }
+
+        @Override
+        public int getInt(int pos) {
+            return intColumns[pos][row];
+        }
+
+        @Override
+        public double getDouble(int pos) {
+            return doubleColumns[pos][row];
+        }
+
+        @Override
+        public double[] vectorArray(int pos) {
+            return vectorColumns[pos];
+        }
+
+        @Override
+        public int vectorOffset(int pos) {
+            return row * RobotDataLayout.width(pos);
+        }
+
+        /**
+         * @return A {@link RobotDataView} of the cursor's row, for writing through AvroWriteSupport.
+         */
+        public IndexedRecord asRecord() {
+            if (view == null) {
+                view = new RobotDataView(this);
+            }
+            return view;
+        }
+    }
+}
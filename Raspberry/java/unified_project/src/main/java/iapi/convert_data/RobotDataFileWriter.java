@@ -0,0 +1,313 @@
+package iapi.convert_data;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.parquet.avro.AvroSchemaConverter;
+import org.apache.parquet.avro.AvroWriteSupport;
+import org.apache.parquet.column.ColumnWriteStore;
+import org.apache.parquet.column.ParquetProperties;
+import org.apache.parquet.compression.CompressionCodecFactory.BytesInputCompressor;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.hadoop.CodecFactory;
+import org.apache.parquet.hadoop.ColumnChunkPageWriteStore;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.MessageType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes {@link RobotDataRow}s (or {@link RobotData} records) to one Parquet file, like {@code AvroParquetWriter}, but with the
+ * row group size taken from a shared {@link WriterMemoryManager} and a {@link #flushRowGroup()} to
+ * end a row group early. {@code ParquetWriter} offers neither, so this drives the parquet-mr file,
+ * page and column stores directly, the same way {@code InternalParquetRecordWriter} does.
+ *
+ * Pages are compressed by parquet-mr's {@code CodecFactory}, configured by the {@link ParquetProfile}
+ * through a {@code PlainParquetConfiguration}.
+ *
+ * Rows are written by {@link RobotDataWriteSupport} straight from their primitives; records go
+ * through AvroWriteSupport. Both produce the same file.
+ *
+ * With a flush executor, a full row group is handed to the executor to finish encoding, compress
+ * its last pages and write it out, while the next row group fills on new column stores. At most one
+ * row group per file is in flight: the next flush waits for the previous one, which keeps both
+ * the memory use and the order of row groups in the file fixed.
+ *
+ * Not thread-safe; owned by a single writer thread.
+ */
+public class RobotDataFileWriter implements Closeable {
+
+    private static final long BLOOM_FILTER_NDV = 1000; // Distinct values per row group; robot IDs and status codes stay far below
+
+    private final WriterMemoryManager memoryManager;
+    private final ParquetFileWriter fileWriter;
+    private final RobotDataWriteSupport writeSupport;
+    private final MessageType schema;
+    private final Map<String, String> extraMetaData;
+    private final ParquetProperties props;
+    private final ParquetProfile profile;
+    private final ExecutorService flushExecutor; // Null to flush on the calling thread
+    private final CodecFactory[] codecFactories; // Used by turns, one per row group
+
+    private ColumnWriteStore columnStore;
+    private ColumnChunkPageWriteStore pageStore;
+    private RecordConsumer recordConsumer;
+
+    private long recordCount;
+    private long recordCountForNextMemCheck;
+    private volatile long nextRowGroupSize; // Updated by the flush executor
+    private volatile long lastRowGroupEndPos;
+    private long reportedBuffered; // Buffered size last reported to the memory manager
+    private int rowGroupOrdinal;
+    private int storeCount;
+    private boolean closed;
+
+    private Future<?> pendingFlush;
+    private long pendingBuffered; // Buffered size of the row group in flight
+
+    public RobotDataFileWriter(OutputFile file, ParquetConfiguration conf, ParquetWriterOptions options,
+                               WriterMemoryManager memoryManager) throws IOException {
+        this(file, conf, options, memoryManager, null);
+    }
+
+    /**
+     * @param flushExecutor Executor that writes full row groups out, or null to write them on the
+     *                      calling thread. Should be single-threaded if shared, so flushes are not
+     *                      run ahead of each other.
+     */
+    public RobotDataFileWriter(OutputFile file, ParquetConfiguration conf, ParquetWriterOptions options,
+                               WriterMemoryManager memoryManager, ExecutorService flushExecutor) throws IOException {
+        this.memoryManager = memoryManager;
+        this.flushExecutor = flushExecutor;
+        this.profile = options.getProfile();
+
+        Schema avroSchema = options.isTimestampMicros() ? RobotDataModel.TIMESTAMP_MICROS_SCHEMA : RobotData.getClassSchema();
+        writeSupport = new RobotDataWriteSupport(new AvroWriteSupport<>(new AvroSchemaConverter(conf).convert(avroSchema),
+                avroSchema, new RobotDataModel(options.isTimestampMicros())), options.isTimestampMicros());
+        WriteSupport.WriteContext writeContext = writeSupport.init(conf);
+        schema = writeContext.getSchema();
+        extraMetaData = writeContext.getExtraMetaData();
+
+        memoryManager.register();
+        long rowGroupSize = memoryManager.getRowGroupSize();
+        int pageSize = WriterMemoryManager.pageSizeFor(rowGroupSize, schema.getColumns().size());
+        ParquetProperties.Builder properties = ParquetProperties.builder()
+                .withPageSize(pageSize)
+                .withDictionaryPageSize(pageSize)
+                .withPageRowCountLimit(options.getPageRowCountLimit());
+        for (String column : options.getBloomFilterColumns()) {
+            properties.withBloomFilterEnabled(column, true)
+                    .withBloomFilterNDV(column, BLOOM_FILTER_NDV);
+        }
+        if (options.isTimestampMicros()) {
+            properties.withValuesWriterFactory(new TimestampDeltaValuesWriterFactory());
+        }
+        props = profile.apply(properties).build();
+        // Compressors keep state, and the previous row group may still be compressing on the flush executor
+        codecFactories = new CodecFactory[]{
+                new CodecFactory(profile.getCodecConfiguration(), pageSize),
+                new CodecFactory(profile.getCodecConfiguration(), pageSize)};
+
+        try {
+            fileWriter = new ParquetFileWriter(file, schema, ParquetFileWriter.Mode.OVERWRITE, rowGroupSize,
+                    ParquetWriter.MAX_PADDING_SIZE_DEFAULT, null, props);
+            fileWriter.start();
+        } catch (IOException | RuntimeException e) {
+            memoryManager.unregister(0);
+            releaseCodecs();
+            throw e;
+        }
+        nextRowGroupSize = rowGroupSize;
+        recordCountForNextMemCheck = props.getMinRowCountForPageSizeCheck();
+        initStore();
+    }
+
+    private void initStore() {
+        // At most one row group is in flight, so it never shares a compressor with the one filling up
+        BytesInputCompressor compressor = codecFactories[storeCount++ % codecFactories.length].getCompressor(profile.getCodec());
+        pageStore = new ColumnChunkPageWriteStore(compressor, schema, props.getAllocator(),
+                props.getColumnIndexTruncateLength(), props.getPageWriteChecksumEnabled(), null, rowGroupOrdinal);
+        columnStore = props.newColumnWriteStore(schema, pageStore, pageStore);
+        recordConsumer = new ColumnIOFactory(false).getColumnIO(schema).getRecordWriter(columnStore);
+        writeSupport.prepareForWrite(recordConsumer);
+    }
+
+    public void write(RobotDataRow row) throws IOException {
+        writeSupport.write(row);
+        countRecord();
+    }
+
+    /**
+     * Writes the record through AvroWriteSupport; slower than {@link #write(RobotDataRow)}.
+     */
+    public void write(IndexedRecord record) throws IOException {
+        writeSupport.avro().write(record);
+        countRecord();
+    }
+
+    private void countRecord() throws IOException {
+        recordCount++;
+        if (recordCount >= recordCountForNextMemCheck) {
+            checkRowGroupSize(); // Relatively expensive, so only every so many records
+        }
+    }
+
+    private void checkRowGroupSize() throws IOException {
+        long buffered = columnStore.getBufferedSize();
+        long recordSize = buffered / recordCount;
+        long threshold = Math.min(nextRowGroupSize, memoryManager.getRowGroupSize());
+        boolean overBudget = memoryManager.update(buffered - reportedBuffered, buffered);
+        reportedBuffered = buffered;
+
+        // Flush within ~2 records of the limit; slightly under size is much better than over
+        if (overBudget || buffered > threshold - 2 * recordSize) {
+            flushRowGroup();
+            recordCountForNextMemCheck = Math.min(Math.max(props.getMinRowCountForPageSizeCheck(), recordCount / 2),
+                    props.getMaxRowCountForPageSizeCheck());
+        } else {
+            recordCountForNextMemCheck = Math.min(
+                    Math.max(props.getMinRowCountForPageSizeCheck(), (recordCount + (long) (threshold / (float) recordSize)) / 2),
+                    recordCount + props.getMaxRowCountForPageSizeCheck());
+        }
+    }
+
+    /**
+     * Writes the buffered records out as a row group and starts a new one. Does nothing when nothing is buffered.
+     *
+     * With a flush executor the row group is only queued; this waits for the previous one instead.
+     */
+    public void flushRowGroup() throws IOException {
+        recordConsumer.flush();
+        ColumnWriteStore fullColumnStore = columnStore;
+        ColumnChunkPageWriteStore fullPageStore = pageStore;
+        long records = recordCount;
+        long buffered = reportedBuffered;
+        if (records > 0) {
+            rowGroupOrdinal++;
+        }
+        recordCount = 0;
+        reportedBuffered = 0;
+
+        boolean handedOff = false; // Whether writeRowGroup now owns the full stores and their memory
+        try {
+            if (flushExecutor == null || records == 0) {
+                handedOff = true;
+                writeRowGroup(fullColumnStore, fullPageStore, records, buffered);
+            } else {
+                awaitPendingFlush(); // Throws if the previous row group failed, which dooms the file
+                pendingBuffered = fullColumnStore.getBufferedSize();
+                pendingFlush = flushExecutor.submit(() -> {
+                    writeRowGroup(fullColumnStore, fullPageStore, records, buffered);
+                    return null;
+                });
+                handedOff = true;
+            }
+        } finally {
+            if (!handedOff) {
+                fullColumnStore.close();
+                fullPageStore.close();
+                memoryManager.update(-buffered, 0);
+            }
+            initStore();
+        }
+    }
+
+    private void writeRowGroup(ColumnWriteStore fullColumnStore, ColumnChunkPageWriteStore fullPageStore, long records,
+                               long buffered) throws IOException {
+        try {
+            if (records > 0) {
+                fileWriter.startBlock(records);
+                fullColumnStore.flush();
+                fullPageStore.flushToFileWriter(fileWriter);
+                fileWriter.endBlock();
+                nextRowGroupSize = Math.min(fileWriter.getNextRowGroupSize(), memoryManager.getRowGroupSize());
+                lastRowGroupEndPos = fileWriter.getPos();
+            }
+        } finally {
+            fullColumnStore.close();
+            fullPageStore.close();
+            memoryManager.update(-buffered, 0);
+        }
+    }
+
+    /**
+     * Waits for the row group in flight, if any, and rethrows its failure.
+     */
+    private void awaitPendingFlush() throws IOException {
+        if (pendingFlush == null) {
+            return;
+        }
+        try {
+            pendingFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a row group flush.");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ioException ? ioException
+                    : new IOException("Row group flush failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pendingFlush = null;
+            pendingBuffered = 0;
+        }
+    }
+
+    /**
+     * @return Bytes written to the file plus bytes buffered for the open row group and the one in
+     * flight. Close to a row group's worth high for a moment when the flush in flight completes.
+     */
+    public long getDataSize() {
+        long inFlight = pendingFlush != null && !pendingFlush.isDone() ? pendingBuffered : 0;
+        return lastRowGroupEndPos + inFlight + columnStore.getBufferedSize();
+    }
+
+    public long getBufferedSize() {
+        return columnStore.getBufferedSize();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushRowGroup();
+            awaitPendingFlush();
+            Map<String, String> metaData = new HashMap<>(extraMetaData);
+            metaData.put(ParquetWriter.OBJECT_MODEL_NAME_PROP, writeSupport.getName());
+            metaData.putAll(writeSupport.finalizeWrite().getExtraMetaData());
+            fileWriter.end(metaData);
+        } finally {
+            if (pendingFlush != null) {
+                try {
+                    awaitPendingFlush(); // Only after a failure above; the file is not closed under a running flush
+                } catch (IOException e) {
+                    System.err.println("Row group flush failed while closing: " + e.getMessage());
+                }
+            }
+            columnStore.close();
+            pageStore.close();
+            fileWriter.close();
+            releaseCodecs();
+            memoryManager.unregister(reportedBuffered);
+            reportedBuffered = 0;
+        }
+    }
+
+    private void releaseCodecs() {
+        for (CodecFactory codecFactory : codecFactories) {
+            codecFactory.release();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package iapi.convert_data;
+
+import org.apache.avro.Schema;
+
+import java.util.Map;
+
+/**
+ * Primitive storage layout of the RobotData schema: the type of every schema field position, and
+ * the fixed number of elements of each array field (6 per joint or Cartesian vector, 3 for the tool
+ * acceleration and elbow vectors).
+ */
+public final class RobotDataLayout {
+
+    public static final Schema SCHEMA = RobotData.getClassSchema();
+    public static final int FIELD_COUNT = SCHEMA.getFields().size();
+
+    private static final Map<String, Integer> VECTOR_WIDTHS = Map.ofEntries(
+            Map.entry("ActualJointPositions", 6),
+            Map.entry("ActualJointVelocities", 6),
+            Map.entry("ActualJointCurrents", 6),
+            Map.entry("ActualCartesianCoordinates", 6),
+            Map.entry("ActualToolSpeed", 6),
+            Map.entry("GeneralizedForces", 6),
+            Map.entry("TemperatureOfEachJoint", 6),
+            Map.entry("ToolAcceleration", 3),
+            Map.entry("JointVoltages", 6),
+            Map.entry("ElbowPosition", 3),
+            Map.entry("ElbowVelocity", 3)
+    );
+
+    private static final Schema.Type[] TYPES = new Schema.Type[FIELD_COUNT];
+    private static final int[] WIDTHS = new int[FIELD_COUNT];
+
+    static {
+        for (Schema.Field field : SCHEMA.getFields()) {
+            int pos = field.pos();
+            TYPES[pos] = field.schema().getType();
+            switch (TYPES[pos]) {
+                case INT, DOUBLE -> {
+                }
+                case ARRAY -> {
+                    Integer width = VECTOR_WIDTHS.get(field.name());
+                    if (width == null) {
+                        throw new IllegalStateException("No vector width defined for field " + field.name());
+                    }
+                    WIDTHS[pos] = width;
+                }
+                default -> throw new IllegalStateException("Unsupported type for field " + field.name() + ": " + TYPES[pos]);
+            }
+        }
+    }
+
+    private RobotDataLayout() {
+    }
+
+    public static Schema.Type type(int pos) {
+        return TYPES[pos];
+    }
+
+    /**
+     * Number of elements of an array field, 0 for scalar fields.
+     */
+    public static int width(int pos) {
+        return WIDTHS[pos];
+    }
+
+    public static int position(String fieldName) {
+        return SCHEMA.getField(fieldName).pos();
+    }
+}
@@ -0,0 +1,70 @@
+package iapi.convert_data;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Avro data model for writing {@link RobotDataView}s to Parquet. Array fields are handed to
+ * AvroWriteSupport as primitive double[] (which it writes without boxing) instead of List&lt;Double&gt;.
+ *
+ * Keeps one scratch array per vector field, so an instance must only be used by one writer thread.
+ */
+public class RobotDataModel extends SpecificData {
+
+    /**
+     * The RobotData schema with Timestamp as a {@code timestamp-micros} long instead of double epoch seconds.
+     */
+    public static final Schema TIMESTAMP_MICROS_SCHEMA = timestampMicrosSchema();
+
+    private static final int TIMESTAMP = RobotDataLayout.position("Timestamp");
+
+    private final double[][] scratch = new double[RobotDataLayout.FIELD_COUNT][];
+    private final boolean timestampMicros;
+
+    public RobotDataModel() {
+        this(false);
+    }
+
+    /**
+     * @param timestampMicros Hand out Timestamp as epoch microseconds, for {@link #TIMESTAMP_MICROS_SCHEMA}.
+     */
+    public RobotDataModel(boolean timestampMicros) {
+        this.timestampMicros = timestampMicros;
+        for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+            int width = RobotDataLayout.width(pos);
+            if (width > 0) {
+                scratch[pos] = new double[width];
+            }
+        }
+    }
+
+    @Override
+    public Object getField(Object record, String name, int position) {
+        if (record instanceof RobotDataView view && scratch[position] != null) {
+            RobotDataRow row = view.row();
+            double[] values = scratch[position];
+            System.arraycopy(row.vectorArray(position), row.vectorOffset(position), values, 0, values.length);
+            return values;
+        }
+        if (timestampMicros && position == TIMESTAMP && record instanceof RobotDataView view) {
+            return CSVDataCleaner.toEpochMicros(view.row().getDouble(position));
+        }
+        return super.getField(record, name, position);
+    }
+
+    private static Schema timestampMicrosSchema() {
+        Schema schema = RobotData.getClassSchema();
+        List<Schema.Field> fields = new ArrayList<>();
+        for (Schema.Field field : schema.getFields()) {
+            Schema type = field.pos() == RobotDataLayout.position("Timestamp")
+                    ? LogicalTypes.timestampMicros().addToSchema(Schema.create(Schema.Type.LONG))
+                    : field.schema();
+            fields.add(new Schema.Field(field, type));
+        }
+        return Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), false, fields);
+    }
+}
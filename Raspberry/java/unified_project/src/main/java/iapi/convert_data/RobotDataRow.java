@@ -0,0 +1,23 @@
+package iapi.convert_data;
+
+/**
+ * Read access to one RobotData sample stored in primitive form, addressed by schema field position.
+ * Array fields are exposed as a slice of a backing array so callers can read them without copying.
+ */
+public interface RobotDataRow {
+
+    int getInt(int pos);
+
+    double getDouble(int pos);
+
+    /**
+     * Backing array of an array field; its elements start at {@link #vectorOffset(int)}.
+     */
+    double[] vectorArray(int pos);
+
+    int vectorOffset(int pos);
+
+    default int vectorLength(int pos) {
+        return RobotDataLayout.width(pos);
+    }
+}
@@ -0,0 +1,89 @@
+package iapi.convert_data;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only Avro record with the {@link RobotData} schema over a {@link RobotDataRow}. Lets the row
+ * be written through AvroWriteSupport without copying the primitive data: array fields are returned
+ * as list views over the row's backing array.
+ *
+ * It is not a generated RobotData, so there are no setters that could write fields the view does
+ * not read; {@link #put} throws.
+ */
+public class RobotDataView implements IndexedRecord {
+
+    private final RobotDataRow row;
+
+    public RobotDataView(RobotDataRow row) {
+        this.row = row;
+    }
+
+    public RobotDataRow row() {
+        return row;
+    }
+
+    @Override
+    public Schema getSchema() {
+        return RobotDataLayout.SCHEMA;
+    }
+
+    @Override
+    public Object get(int field) {
+        switch (RobotDataLayout.type(field)) {
+            case INT:
+                return row.getInt(field);
+            case DOUBLE:
+                return row.getDouble(field);
+            default:
+                return vector(field);
+        }
+    }
+
+    @Override
+    public void put(int field, Object value) {
+        throw new UnsupportedOperationException("RobotDataView is read-only");
+    }
+
+    private List<Double> vector(int field) {
+        return new DoubleSlice(row.vectorArray(field), row.vectorOffset(field), row.vectorLength(field));
+    }
+
+    @Override
+    public String toString() {
+        return GenericData.get().toString(this);
+    }
+
+    /**
+     * Fixed-size list view over a slice of a double array.
+     */
+    private static final class DoubleSlice extends AbstractList<Double> implements RandomAccess {
+        private final double[] values;
+        private final int offset;
+        private final int length;
+
+        DoubleSlice(double[] values, int offset, int length) {
+            this.values = values;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public Double get(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return values[offset + index];
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+    }
+}
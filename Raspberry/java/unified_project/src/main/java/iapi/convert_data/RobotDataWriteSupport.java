@@ -0,0 +1,143 @@
+package iapi.convert_data;
+
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.conf.HadoopParquetConfiguration;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.hadoop.api.WriteSupport;
+import org.apache.parquet.io.api.RecordConsumer;
+import org.apache.parquet.schema.GroupType;
+import org.apache.parquet.schema.MessageType;
+
+/**
+ * Writes {@link RobotDataRow}s straight into Parquet's record consumer, reading the primitives
+ * from the row instead of going through a {@link RobotData} view, the Avro data model and
+ * AvroWriteSupport's per-field lookups, boxing and list handling.
+ *
+ * The schema, footer metadata and writer name come from the wrapped AvroWriteSupport, and the
+ * record events are the ones it would emit for the same row, so the files are byte for byte the
+ * same as those written through Avro. Both list structures AvroSchemaConverter can produce are
+ * supported: the default two-level {@code repeated double array} and the three-level
+ * {@code repeated group list { element }}.
+ */
+class RobotDataWriteSupport extends WriteSupport<RobotDataRow> {
+
+    private static final int TIMESTAMP = RobotDataLayout.position("Timestamp");
+
+    private final WriteSupport<IndexedRecord> avroWriteSupport;
+    private final boolean timestampMicros;
+    private final String[] fieldNames = new String[RobotDataLayout.FIELD_COUNT];
+    private final String[] repeatedNames = new String[RobotDataLayout.FIELD_COUNT];
+    private final String[] elementNames = new String[RobotDataLayout.FIELD_COUNT]; // Null for two-level lists
+
+    private RecordConsumer consumer;
+
+    /**
+     * @param avroWriteSupport The AvroWriteSupport for the RobotData schema (or its timestamp-micros variant).
+     * @param timestampMicros  Whether that schema stores Timestamp as epoch microseconds.
+     */
+    RobotDataWriteSupport(WriteSupport<IndexedRecord> avroWriteSupport, boolean timestampMicros) {
+        this.avroWriteSupport = avroWriteSupport;
+        this.timestampMicros = timestampMicros;
+    }
+
+    /**
+     * Still abstract in WriteSupport, so it has to be implemented; it only adapts the configuration.
+     */
+    @Override
+    @Deprecated
+    public WriteContext init(Configuration configuration) {
+        return init(new HadoopParquetConfiguration(configuration));
+    }
+
+    @Override
+    public WriteContext init(ParquetConfiguration configuration) {
+        return bind(avroWriteSupport.init(configuration));
+    }
+
+    private WriteContext bind(WriteContext context) {
+        MessageType schema = context.getSchema();
+        if (schema.getFieldCount() != RobotDataLayout.FIELD_COUNT) {
+            throw new IllegalStateException("Schema does not match the RobotData layout: " + schema);
+        }
+        for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+            fieldNames[pos] = schema.getFieldName(pos);
+            if (RobotDataLayout.width(pos) > 0) {
+                GroupType list = schema.getType(pos).asGroupType();
+                repeatedNames[pos] = list.getFieldName(0);
+                if (!list.getType(0).isPrimitive()) {
+                    elementNames[pos] = list.getType(0).asGroupType().getFieldName(0);
+                }
+            }
+        }
+        return context;
+    }
+
+    @Override
+    public String getName() {
+        return avroWriteSupport.getName();
+    }
+
+    @Override
+    public void prepareForWrite(RecordConsumer recordConsumer) {
+        this.consumer = recordConsumer;
+        avroWriteSupport.prepareForWrite(recordConsumer);
+    }
+
+    @Override
+    public void write(RobotDataRow row) {
+        consumer.startMessage();
+        for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+            consumer.startField(fieldNames[pos], pos);
+            switch (RobotDataLayout.type(pos)) {
+                case INT -> consumer.addInteger(row.getInt(pos));
+                case DOUBLE -> {
+                    if (timestampMicros && pos == TIMESTAMP) {
+                        consumer.addLong(CSVDataCleaner.toEpochMicros(row.getDouble(pos)));
+                    } else {
+                        consumer.addDouble(row.getDouble(pos));
+                    }
+                }
+                default -> writeVector(row, pos);
+            }
+            consumer.endField(fieldNames[pos], pos);
+        }
+        consumer.endMessage();
+    }
+
+    private void writeVector(RobotDataRow row, int pos) {
+        double[] values = row.vectorArray(pos);
+        int offset = row.vectorOffset(pos);
+        int length = row.vectorLength(pos);
+        consumer.startGroup();
+        if (length > 0) {
+            consumer.startField(repeatedNames[pos], 0);
+            for (int i = offset; i < offset + length; i++) {
+                if (elementNames[pos] == null) {
+                    consumer.addDouble(values[i]);
+                } else {
+                    consumer.startGroup();
+                    consumer.startField(elementNames[pos], 0);
+                    consumer.addDouble(values[i]);
+                    consumer.endField(elementNames[pos], 0);
+                    consumer.endGroup();
+                }
+            }
+            consumer.endField(repeatedNames[pos], 0);
+        }
+        consumer.endGroup();
+    }
+
+    @Override
+    public FinalizedWriteContext finalizeWrite() {
+        return avroWriteSupport.finalizeWrite();
+    }
+
+    /**
+     * @return The wrapped AvroWriteSupport, prepared on the same record consumer, for writing
+     * {@link RobotData} records and {@link RobotDataView}s.
+     */
+    WriteSupport<IndexedRecord> avro() {
+        return avroWriteSupport;
+    }
+}
@@ -0,0 +1,77 @@
+package iapi.convert_data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tracks when all rows of a source file are in published Parquet files, so the source can be
+ * checkpointed as processed without losing rows that were still in an open file when the process
+ * died.
+ *
+ * A source holds one reference for every batch of it that is queued on a writer and one for every
+ * open file that has rows of it. Once the source is {@link #finish finished} and the last reference
+ * is released, the listener is called, unless a file with its rows could not be published.
+ *
+ * Thread-safe.
+ */
+class SourceTracker {
+
+    private static final class State {
+        int references;
+        boolean finished;
+        boolean failed;
+    }
+
+    private final Map<String, State> sources = new HashMap<>();
+    private volatile Consumer<String> listener = source -> { };
+
+    void setListener(Consumer<String> listener) {
+        this.listener = listener;
+    }
+
+    synchronized void acquire(String source) {
+        sources.computeIfAbsent(source, key -> new State()).references++;
+    }
+
+    synchronized void release(String source) {
+        State state = sources.get(source);
+        state.references--;
+        completeIfDone(source, state);
+    }
+
+    /**
+     * Marks the source as not completely written, so it is never reported.
+     */
+    synchronized void fail(String source) {
+        sources.computeIfAbsent(source, key -> new State()).failed = true;
+    }
+
+    /**
+     * Marks that no more batches of the source will be written.
+     */
+    synchronized void finish(String source) {
+        State state = sources.computeIfAbsent(source, key -> new State());
+        state.finished = true;
+        completeIfDone(source, state);
+    }
+
+    private void completeIfDone(String source, State state) {
+        if (!state.finished || state.references > 0) {
+            return;
+        }
+        sources.remove(source);
+        if (state.failed) {
+            System.err.println("Not all rows of " + source + " were published; it is not checkpointed.");
+        } else {
+            listener.accept(source);
+        }
+    }
+
+    /**
+     * @return The number of sources with rows that are not published yet.
+     */
+    synchronized int getPending() {
+        return sources.size();
+    }
+}
@@ -0,0 +1,121 @@
+package iapi.convert_data;
+
+import org.apache.parquet.column.ParquetProperties;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one memory budget for buffered row groups between all open Parquet files of a
+ * {@link ParquetWriterPool}.
+ *
+ * Every open file gets a row group size of budget / open files, capped at the configured row group
+ * size, and recomputed whenever a file is opened or closed. Files report their buffered size as they
+ * write; once the total reaches the budget, a file that holds at least half its share flushes its
+ * row group early. Files are only ever flushed by their own writer thread.
+ */
+public class WriterMemoryManager {
+
+    public static final long MIN_ROW_GROUP_SIZE = 1024 * 1024;
+    private static final int MIN_PAGE_SIZE = 64 * 1024;
+    private static final int PAGES_PER_COLUMN_CHUNK = 4; // Keeps pages small enough to skip with the page index
+
+    private final long budgetBytes;
+    private final long maxRowGroupSize;
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong earlyFlushes = new AtomicLong();
+    private int openFiles;
+    private volatile long rowGroupSize;
+
+    /**
+     * @param budgetBytes     Memory all open files together may buffer.
+     * @param maxRowGroupSize Row group size used while the budget allows it.
+     */
+    public WriterMemoryManager(long budgetBytes, long maxRowGroupSize) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be greater than 0.");
+        }
+        this.budgetBytes = budgetBytes;
+        this.maxRowGroupSize = maxRowGroupSize;
+        this.rowGroupSize = Math.max(MIN_ROW_GROUP_SIZE, Math.min(maxRowGroupSize, budgetBytes));
+    }
+
+    public WriterMemoryManager(ParquetWriterOptions options) {
+        this(options.getMemoryBudgetBytes(), options.getRowGroupSize());
+    }
+
+    synchronized void register() {
+        openFiles++;
+        resize();
+    }
+
+    /**
+     * @param buffered Bytes the closed file still had reported as buffered.
+     */
+    synchronized void unregister(long buffered) {
+        openFiles--;
+        bufferedBytes.addAndGet(-buffered);
+        resize();
+    }
+
+    private void resize() {
+        long share = budgetBytes / Math.max(1, openFiles);
+        long size = Math.min(maxRowGroupSize, share);
+        if (size < MIN_ROW_GROUP_SIZE && rowGroupSize > MIN_ROW_GROUP_SIZE) {
+            System.err.printf("Memory budget of %d bytes is too small for %d open files; using %d byte row groups.%n",
+                    budgetBytes, openFiles, MIN_ROW_GROUP_SIZE);
+        }
+        rowGroupSize = Math.max(MIN_ROW_GROUP_SIZE, size);
+    }
+
+    /**
+     * Row group size for the open files at the current number of open files.
+     */
+    public long getRowGroupSize() {
+        return rowGroupSize;
+    }
+
+    /**
+     * Page size for a file opened with the given row group size: a few pages per column chunk, between
+     * 64 KB and the parquet-mr default of 1 MB.
+     */
+    static int pageSizeFor(long rowGroupSize, int columns) {
+        long pageSize = rowGroupSize / ((long) columns * PAGES_PER_COLUMN_CHUNK);
+        return (int) Math.max(MIN_PAGE_SIZE, Math.min(ParquetProperties.DEFAULT_PAGE_SIZE, pageSize));
+    }
+
+    /**
+     * Records a change in a file's buffered size and tells whether that file should flush early.
+     *
+     * @param delta    Change since the file's last report.
+     * @param buffered The file's buffered size now.
+     */
+    boolean update(long delta, long buffered) {
+        long total = bufferedBytes.addAndGet(delta);
+        if (total >= budgetBytes && buffered >= rowGroupSize / 2) {
+            earlyFlushes.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public long getEarlyFlushes() {
+        return earlyFlushes.get();
+    }
+
+    public synchronized int getOpenFiles() {
+        return openFiles;
+    }
+
+    public String summary() {
+        return String.format("Memory: budget %d MB, %d open file(s), row groups %d MB, %d early flush(es).",
+                budgetBytes >> 20, getOpenFiles(), rowGroupSize >> 20, getEarlyFlushes());
+    }
+}
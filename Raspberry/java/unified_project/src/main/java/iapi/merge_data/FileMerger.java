@@ -1,63 +1,164 @@
 package iapi.merge_data;
 
 import iapi.convert_data.CSVDataCleaner;
+import iapi.convert_data.CheckpointStore;
+import iapi.convert_data.CSVTokenizer;
+import iapi.convert_data.ColumnBinding;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.ParquetWriterPool;
 import iapi.convert_data.ParquetWriterUtil;
-import iapi.convert_data.RobotData;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
+import iapi.convert_data.RobotDataBatch;
+import org.apache.parquet.conf.ParquetConfiguration;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 
+/**
+ * Parses the CSV files of the input folder and writes their rows through a {@link ParquetWriterPool}.
+ *
+ * A file counts as processed once all its rows are in published Parquet files. Processed files are
+ * recorded in a {@link CheckpointStore}, which with checkpointing on lives in the output directory,
+ * so a restarted merger skips them. Files whose rows are still on their way are kept in memory only.
+ *
+ * Files are parsed in parallel. With ordered ingest their rows still reach the writers in file
+ * order: a {@link ReorderBuffer} holds the batches of later files until the earlier ones are done.
+ *
+ * Pending input files are kept in an {@link InputIndex}. With an archive folder, processed files are
+ * moved there by an {@link InputArchiver}, and their checkpoint entries are dropped once moved.
+ *
+ * In tail mode the files are read again and again, each time only the rows appended since; see
+ * {@link FileTailer}.
+ */
 public class FileMerger {
 
+    private static final String INPUT_KEY = "input:"; // Checkpoint key prefix of processed inputs
+
     private final String inputFolder;
     private final long maxFileSizeBytes;
-    private final Set<String> processedFiles;
-    private final ParquetWriterUtil parquetWriterUtil;
+    private final boolean timestampMicros;
+    private final boolean orderedIngest;
+    private final int reorderBufferBatches;
+    private final CheckpointStore checkpoint;
+    private final Set<String> inFlightFiles; // Submitted, but not all rows published yet (or failed)
+    private final ParquetWriterPool writerPool;
+    private final FileTailer tailer;
+    private final InputIndex inputIndex;
+    private final InputArchiver archiver; // Null if processed inputs stay in place
     private final ExecutorService executor;
 
-    public FileMerger(String inputFolder, long maxFileSizeBytes, String outputFilePath, org.apache.hadoop.conf.Configuration conf) throws IOException {
+    public FileMerger(String inputFolder, long maxFileSizeBytes, String outputFilePath, ParquetConfiguration conf) throws IOException {
+        this(inputFolder, outputFilePath, conf, new ParquetWriterOptions().withTargetFileSize(maxFileSizeBytes));
+    }
+
+    public FileMerger(String inputFolder, String outputFilePath, ParquetConfiguration conf,
+                      ParquetWriterOptions options) throws IOException {
         this.inputFolder = inputFolder;
-        this.maxFileSizeBytes = maxFileSizeBytes;
-        this.processedFiles = ConcurrentHashMap.newKeySet();
-        this.parquetWriterUtil = ParquetWriterUtil.getInstance(outputFilePath, conf, maxFileSizeBytes);
-        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.maxFileSizeBytes = options.getTargetFileSizeBytes();
+        this.timestampMicros = options.isTimestampMicros();
+        this.orderedIngest = options.isOrderedIngest();
+        this.reorderBufferBatches = options.getQueueCapacity(); // As much as one writer queue holds
+        this.inFlightFiles = ConcurrentHashMap.newKeySet();
+        if (options.isCheckpointing()) {
+            this.checkpoint = new CheckpointStore(ParquetWriterUtil.outputDirectory(outputFilePath).toPath());
+            // Inputs that are gone cannot come back under their name, so they need no entry
+            int removed = checkpoint.removeIf(key -> isRemovedInput(key, INPUT_KEY) || isRemovedInput(key, FileTailer.OFFSET_KEY));
+            if (removed > 0) {
+                System.out.printf("Dropped %d checkpoint entries of removed input files.%n", removed);
+            }
+        } else {
+            this.checkpoint = CheckpointStore.inMemory();
+        }
+        this.writerPool = ParquetWriterPool.start(outputFilePath, conf, options, checkpoint);
+        writerPool.onSourceCommitted(this::commit);
+        this.tailer = new FileTailer(writerPool, checkpoint, timestampMicros);
+        this.inputIndex = new InputIndex(new File(inputFolder).toPath());
+        if (options.getArchiveFolder() != null) {
+            this.archiver = new InputArchiver(new File(inputFolder).toPath(), options.getArchiveFolder(), this::archived);
+            // Processed before a restart, but not moved yet
+            checkpoint.keys(INPUT_KEY).forEach(key -> archiver.archive(key.substring(INPUT_KEY.length())));
+        } else {
+            this.archiver = null;
+        }
+        this.executor = Executors.newFixedThreadPool(options.getParserThreads());
+    }
+
+    private boolean isRemovedInput(String key, String prefix) {
+        return key.startsWith(prefix) && !new File(inputFolder, key.substring(prefix.length())).exists();
     }
 
     /**
      * Merges files concurrently.
      */
     public void mergeFilesConcurrently() {
-        File folder = new File(inputFolder);
-        File[] files = folder.listFiles((dir, name) -> name.endsWith(".csv"));
-
-        if (files == null || files.length == 0) {
-            System.out.println("No files in the input folder.");
+        try {
+            inputIndex.scan(this::isProcessed);
+        } catch (IOException e) {
+            System.err.println("Error listing the input folder: " + e.getMessage());
+            return;
+        }
+        if (inputIndex.size() == 0) {
+            System.out.println("No new files in the input folder.");
             return;
         }
+        mergePending();
+    }
+
+    /**
+     * Merges the given files of the input folder concurrently, skipping those that were already
+     * processed, and waits for them to be written.
+     */
+    public void mergeFiles(Collection<File> inputFiles) {
+        for (File file : inputFiles) {
+            inputIndex.add(file.toPath(), this::isProcessed);
+        }
+        mergePending();
+    }
 
-        // Sort files by the smallest number in their names
-        Arrays.sort(files, (f1, f2) -> {
-            int num1 = extractNumber(f1.getName());
-            int num2 = extractNumber(f2.getName());
-            return Integer.compare(num1, num2);
-        });
+    /**
+     * Merges the pending files of the index in order.
+     */
+    private void mergePending() {
+        List<File> newFiles = new ArrayList<>();
+        for (Path path : inputIndex.takeAll()) {
+            File file = path.toFile();
+            // Claimed before the checkpoint is checked; a commit records the file before releasing it
+            if (inFlightFiles.add(file.getName())) {
+                // Gone: archived after it was listed, or deleted
+                if (checkpoint.contains(INPUT_KEY + file.getName()) || !file.exists()) {
+                    inFlightFiles.remove(file.getName());
+                } else {
+                    newFiles.add(file);
+                }
+            }
+        }
+        ReorderBuffer reorder = orderedIngest && newFiles.size() > 1
+                ? new ReorderBuffer(writerPool, newFiles.stream().map(File::getName).toList(), reorderBufferBatches)
+                : null;
 
+        // Submitted in order, so the file the reorder buffer waits for is always being parsed
         List<Future<?>> futures = new ArrayList<>();
-        for (File file : files) {
-            if (processedFiles.add(file.getName())) {
-                futures.add(executor.submit(() -> {
-                    try {
-                        processFile(file);
-                        System.out.println("File processed: " + file.getName());
-                    } catch (IOException e) {
-                        System.err.println("Error processing file: " + file.getName() + ". Reason: " + e.getMessage());
+        for (int i = 0; i < newFiles.size(); i++) {
+            File file = newFiles.get(i);
+            int index = i;
+            futures.add(executor.submit(() -> {
+                try {
+                    processFile(file, reorder == null
+                            ? batch -> writerPool.writeBatch(file.getName(), batch)
+                            : batch -> reorder.write(index, batch));
+                    System.out.println("File processed: " + file.getName());
+                } catch (IOException | RuntimeException e) {
+                    writerPool.failSource(file.getName()); // Retried after a restart
+                    System.err.println("Error processing file: " + file.getName() + ". Reason: " + e.getMessage());
+                } finally {
+                    if (reorder != null) {
+                        reorder.finish(index);
+                    } else {
+                        writerPool.finishSource(file.getName());
                     }
-                }));
-            }
+                }
+            }));
         }
 
         // Wait for all tasks to complete
@@ -68,33 +169,69 @@ public class FileMerger {
                 System.err.println("Error during parallel file processing: " + e.getMessage());
             }
         }
+        if (reorder != null) {
+            System.out.printf("Reorder buffer: up to %d of %d batches held, workers blocked %d ms.%n", reorder.getMaxBuffered(),
+                    reorderBufferBatches, TimeUnit.NANOSECONDS.toMillis(reorder.getBlockedNanos()));
+        }
+        System.out.println(writerPool.summary());
     }
 
     /**
-     * Processes a single file with batch writing.
+     * Reads the rows appended to the input files since the last call, one file after the other in
+     * the order of their numbers. Only complete lines are read.
+     *
+     * @return The number of rows read.
      */
-    private void processFile(File file) throws IOException {
-        List<RobotData> batch = new ArrayList<>();
+    public int tailFiles() {
+        List<Path> files;
+        try {
+            files = InputIndex.list(new File(inputFolder).toPath());
+        } catch (IOException e) {
+            System.err.println("Error listing the input folder: " + e.getMessage());
+            return 0;
+        }
+
+        int rows = 0;
+        for (Path file : files) {
+            try {
+                rows += tailer.read(file.toFile());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error tailing file: " + file.getFileName() + ". Reason: " + e.getMessage());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Receives the batches of one file.
+     */
+    private interface BatchSink {
+        void write(RobotDataBatch batch) throws IOException;
+    }
+
+    /**
+     * Processes a single file with batch writing. Rows are tokenized straight from the file's bytes
+     * and converted through a column binding compiled once from the header.
+     */
+    private void processFile(File file, BatchSink sink) throws IOException {
+        RobotDataBatch batch = new RobotDataBatch();
         int skippedRows = 0;
 
-        try (
-                Reader reader = new BufferedReader(new FileReader(file));
-                CSVParser csvParser = CSVFormat.DEFAULT
-                        .builder()
-                        .setHeader()
-                        .setSkipHeaderRecord(true)
-                        .setIgnoreSurroundingSpaces(true)
-                        .build()
-                        .parse(reader)
-        ) {
-            for (CSVRecord record : csvParser) {
+        try (CSVTokenizer tokenizer = new CSVTokenizer(file.toPath())) {
+            ColumnBinding binding;
+            try {
+                binding = ColumnBinding.forHeader(tokenizer.header());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid header in file " + file.getName() + ". " + e.getMessage(), e);
+            }
+
+            while (tokenizer.nextRow()) {
                 try {
-                    RobotData data = CSVDataCleaner.cleanRecord(record);
-                    batch.add(data);
+                    CSVDataCleaner.cleanRecord(tokenizer, binding, batch, timestampMicros);
 
-                    if (batch.size() >= 1000) { // Write in batches of 1000
-                        parquetWriterUtil.writeBatch(batch);
-                        batch.clear();
+                    if (batch.isFull()) { // Hand off full batches; the writer owns them from here
+                        sink.write(batch);
+                        batch = new RobotDataBatch();
                     }
                 } catch (IllegalArgumentException e) {
                     skippedRows++;
@@ -103,7 +240,7 @@ public class FileMerger {
 
             // Write remaining records in the batch
             if (!batch.isEmpty()) {
-                parquetWriterUtil.writeBatch(batch);
+                sink.write(batch);
             }
 
             if (skippedRows > 0) {
@@ -113,11 +250,40 @@ public class FileMerger {
     }
 
     /**
-     * Extracts a number from the file name for sorting.
+     * Records a file, or a tailed part of one, whose rows are all in published Parquet files.
      */
-    private int extractNumber(String fileName) {
-        String num = fileName.replaceAll("\\D+", "");
-        return num.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(num);
+    private void commit(String fileName) {
+        try {
+            if (tailer.commit(fileName)) {
+                return;
+            }
+            checkpoint.put(INPUT_KEY + fileName, new File(inputFolder, fileName).length());
+            inFlightFiles.remove(fileName);
+            if (archiver != null) {
+                archiver.archive(fileName);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not checkpoint " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the checkpoint entry of a file that was moved out of the input folder; a new file with
+     * its name is a new input.
+     */
+    private void archived(String fileName) {
+        try {
+            checkpoint.remove(INPUT_KEY + fileName);
+        } catch (IOException e) {
+            System.err.println("Could not update the checkpoint for archived " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Whether the file with this name was already processed (or is being processed).
+     */
+    public boolean isProcessed(String fileName) {
+        return inFlightFiles.contains(fileName) || checkpoint.contains(INPUT_KEY + fileName);
     }
 
     public void stop() {
@@ -134,12 +300,24 @@ public class FileMerger {
             Thread.currentThread().interrupt(); // Restore interrupt status
         }
 
-        // Close Parquet writer
+        // Write out everything still queued, then close the Parquet writers
         try {
-            parquetWriterUtil.closeWriter();
-            System.out.println("Parquet writer closed successfully.");
+            writerPool.shutdown();
+            System.out.println("Parquet writers closed successfully.");
         } catch (Exception e) {
-            System.err.println("Error while closing Parquet writer: " + e.getMessage());
+            System.err.println("Error while closing Parquet writers: " + e.getMessage());
+        }
+
+        if (archiver != null) {
+            archiver.close(); // Before the checkpoint, which records the moves
+            System.out.printf("Archived %d processed input files.%n", archiver.getArchived());
+        }
+
+        try {
+            checkpoint.snapshot();
+            checkpoint.close();
+        } catch (IOException e) {
+            System.err.println("Error while closing the checkpoint: " + e.getMessage());
         }
 
         System.out.println("FileMerger stopped.");
@@ -0,0 +1,175 @@
+package iapi.merge_data;
+
+import iapi.convert_data.CSVDataCleaner;
+import iapi.convert_data.CSVTokenizer;
+import iapi.convert_data.CheckpointStore;
+import iapi.convert_data.ColumnBinding;
+import iapi.convert_data.ParquetWriterPool;
+import iapi.convert_data.RobotDataBatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the rows appended to CSV files that keep growing, such as the log of a live robot, instead
+ * of reading every file once.
+ *
+ * Per file it keeps the offset read up to and the offset committed up to. Each batch is written as
+ * its own source ({@code <file>@<end offset>}), and once the batches before an offset are all in
+ * published Parquet files that offset is stored in the {@link CheckpointStore}. A restart continues
+ * from the committed offset, so rows are read again at most, never skipped. A last line without a
+ * line break is left for the next read. A file that became shorter than its offset was replaced and
+ * is read from the start.
+ *
+ * {@link #read} is called from one thread; {@link #commit} may be called from any.
+ */
+class FileTailer {
+
+    static final String OFFSET_KEY = "offset:"; // Checkpoint key prefix of committed offsets
+
+    private final ParquetWriterPool writerPool;
+    private final CheckpointStore checkpoint;
+    private final boolean timestampMicros;
+    private final Map<String, TailedFile> files = new HashMap<>(); // Only used by the reading thread
+    private final Map<String, Chunk> pendingChunks = new HashMap<>(); // Guarded by this
+
+    private static final class TailedFile {
+        final String name;
+        final ArrayDeque<Chunk> chunks = new ArrayDeque<>(); // Uncommitted, in file order; guarded by the tailer
+        long readOffset;
+
+        TailedFile(String name, long readOffset) {
+            this.name = name;
+            this.readOffset = readOffset;
+        }
+    }
+
+    private static final class Chunk {
+        final TailedFile file;
+        final long endOffset;
+        boolean committed;
+
+        Chunk(TailedFile file, long endOffset) {
+            this.file = file;
+            this.endOffset = endOffset;
+        }
+    }
+
+    FileTailer(ParquetWriterPool writerPool, CheckpointStore checkpoint, boolean timestampMicros) {
+        this.writerPool = writerPool;
+        this.checkpoint = checkpoint;
+        this.timestampMicros = timestampMicros;
+    }
+
+    /**
+     * Writes the complete rows appended to the file since the last read.
+     *
+     * @return The number of rows read.
+     */
+    int read(File input) throws IOException {
+        TailedFile file = files.computeIfAbsent(input.getName(),
+                name -> new TailedFile(name, checkpoint.get(OFFSET_KEY + name, 0)));
+        long size = input.length();
+        if (size < file.readOffset) {
+            System.out.printf("File %s shrank from %d to %d bytes; reading it from the start.%n", file.name, file.readOffset, size);
+            file.readOffset = 0;
+        }
+        if (size == file.readOffset) {
+            return 0;
+        }
+
+        try (CSVTokenizer tokenizer = CSVTokenizer.tail(input.toPath(), file.readOffset)) {
+            if (tokenizer == null) {
+                return 0; // Header not complete yet
+            }
+            ColumnBinding binding;
+            try {
+                binding = ColumnBinding.forHeader(tokenizer.header());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid header in file " + file.name + ". " + e.getMessage(), e);
+            }
+
+            RobotDataBatch batch = new RobotDataBatch();
+            int rows = 0;
+            int skippedRows = 0;
+            while (tokenizer.nextRow()) {
+                try {
+                    CSVDataCleaner.cleanRecord(tokenizer, binding, batch, timestampMicros);
+                    rows++;
+                    if (batch.isFull()) {
+                        write(file, batch, tokenizer.offset());
+                        batch = new RobotDataBatch();
+                    }
+                } catch (IllegalArgumentException e) {
+                    skippedRows++;
+                }
+            }
+            write(file, batch, tokenizer.offset());
+            file.readOffset = tokenizer.offset();
+
+            if (skippedRows > 0) {
+                System.out.println("Skipped rows in file " + file.name + ": " + skippedRows);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Writes a batch ending at {@code endOffset} as its own source. An empty batch (only skipped or
+     * blank lines) is committed right away, so the offset still moves past those lines.
+     */
+    private void write(TailedFile file, RobotDataBatch batch, long endOffset) throws IOException {
+        Chunk chunk = new Chunk(file, endOffset);
+        String source = file.name + "@" + endOffset;
+        synchronized (this) {
+            file.chunks.add(chunk);
+            if (batch.isEmpty()) {
+                chunk.committed = true;
+                advance(file);
+                return;
+            }
+            pendingChunks.put(source, chunk);
+        }
+        // Not under the lock: the pool may block, and commits come from the writer threads
+        batch.setSource(source);
+        try {
+            writerPool.writeBatch(file.name, batch);
+        } catch (IOException | RuntimeException e) {
+            writerPool.failSource(source);
+            throw e;
+        } finally {
+            writerPool.finishSource(source);
+        }
+    }
+
+    /**
+     * Records that the rows of a source written by this tailer are published.
+     *
+     * @return Whether the source was one of this tailer's.
+     */
+    synchronized boolean commit(String source) throws IOException {
+        Chunk chunk = pendingChunks.remove(source);
+        if (chunk == null) {
+            return false;
+        }
+        chunk.committed = true;
+        advance(chunk.file);
+        return true;
+    }
+
+    /**
+     * Stores the end of the committed chunks at the start of the file's queue.
+     */
+    private void advance(TailedFile file) throws IOException {
+        long committed = -1;
+        while (!file.chunks.isEmpty() && file.chunks.peek().committed) {
+            committed = file.chunks.poll().endOffset;
+        }
+        if (committed >= 0) {
+            checkpoint.put(OFFSET_KEY + file.name, committed);
+        }
+    }
+}
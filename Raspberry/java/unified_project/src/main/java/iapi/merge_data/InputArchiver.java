@@ -0,0 +1,98 @@
+package iapi.merge_data;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Moves processed input files out of the input folder on a background thread, so the folder that
+ * is scanned only holds files still to be processed.
+ *
+ * Files are moved within the same file system when possible, which is a rename. The listener is
+ * called with the name of every file after it was moved.
+ *
+ * Thread-safe.
+ */
+class InputArchiver implements AutoCloseable {
+
+    private final Path inputFolder;
+    private final Path archiveFolder;
+    private final Consumer<String> listener;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet(); // Each file is only queued once
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "input-archiver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private volatile long archived;
+
+    InputArchiver(Path inputFolder, Path archiveFolder, Consumer<String> listener) throws IOException {
+        this.inputFolder = inputFolder;
+        this.archiveFolder = Files.createDirectories(archiveFolder);
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a file of the input folder to be moved.
+     */
+    void archive(String name) {
+        if (queued.add(name)) {
+            executor.execute(() -> {
+                try {
+                    move(name);
+                } finally {
+                    queued.remove(name);
+                }
+            });
+        }
+    }
+
+    private void move(String name) {
+        Path source = inputFolder.resolve(name);
+        Path target = archiveFolder.resolve(name);
+        try {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING); // Other file system: copied
+            }
+            archived++;
+            listener.accept(name);
+        } catch (NoSuchFileException e) {
+            // Already moved or deleted
+        } catch (IOException e) {
+            System.err.println("Could not archive input file " + name + ": " + e.getMessage());
+        }
+    }
+
+    long getArchived() {
+        return archived;
+    }
+
+    /**
+     * Moves the files still queued, then stops the thread.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.err.println("Archiving processed inputs did not finish; the rest is archived after a restart.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package iapi.merge_data;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * The CSV files of the input folder that are waiting to be processed, in the order of the numbers in
+ * their names.
+ *
+ * The folder is streamed with a {@link DirectoryStream} rather than listed into an array, and pending
+ * files are kept sorted as they are added, so they come out in order without a separate sort.
+ *
+ * {@link FileMerger} takes all pending files on every merge, so every scan still walks the whole
+ * folder and checks each file against {@code known}. Scans stay cheap because the folder is
+ * streamed and because, with an archive folder, processed files are moved out of it; the index
+ * itself saves little.
+ *
+ * Thread-safe.
+ */
+public class InputIndex {
+
+    /**
+     * A pending file and the number its name sorts by.
+     */
+    public record Entry(String name, long sequence) {
+    }
+
+    /**
+     * Files by the number in their names, then by name.
+     */
+    public static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::sequence).thenComparing(Entry::name);
+
+    private final Path folder;
+    private final TreeSet<Entry> pending = new TreeSet<>(ORDER);
+    private final Map<String, Entry> pendingByName = new HashMap<>();
+
+    public InputIndex(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Adds the CSV files in the folder that are neither pending nor {@code known}, and drops pending
+     * files that are gone.
+     *
+     * @return The number of files added.
+     */
+    public synchronized int scan(Predicate<String> known) throws IOException {
+        int added = 0;
+        Set<String> stillThere = new HashSet<>();
+        try (DirectoryStream<Path> stream = newCsvStream(folder)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (pendingByName.containsKey(name)) {
+                    stillThere.add(name);
+                } else if (!known.test(name)) {
+                    addPending(name);
+                    stillThere.add(name);
+                    added++;
+                }
+            }
+        }
+        if (stillThere.size() < pendingByName.size()) {
+            pending.removeIf(entry -> !stillThere.contains(entry.name()));
+            pendingByName.keySet().retainAll(stillThere);
+        }
+        return added;
+    }
+
+    /**
+     * Adds one file of the folder, e.g. one reported by a watch service, unless it is pending or
+     * {@code known} already.
+     *
+     * @return Whether the file was added.
+     */
+    public synchronized boolean add(Path file, Predicate<String> known) {
+        String name = file.getFileName().toString();
+        if (pendingByName.containsKey(name) || known.test(name)) {
+            return false;
+        }
+        addPending(name);
+        return true;
+    }
+
+    private void addPending(String name) {
+        Entry entry = new Entry(name, sequenceNumber(name));
+        pending.add(entry);
+        pendingByName.put(name, entry);
+    }
+
+    /**
+     * Removes and returns all pending files, in order.
+     */
+    public synchronized List<Path> takeAll() {
+        List<Path> files = new ArrayList<>(pending.size());
+        for (Entry entry : pending) {
+            files.add(folder.resolve(entry.name()));
+        }
+        pending.clear();
+        pendingByName.clear();
+        return files;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Lists all CSV files in a folder, in order.
+     */
+    public static List<Path> list(Path folder) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = newCsvStream(folder)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                entries.add(new Entry(name, sequenceNumber(name)));
+            }
+        }
+        entries.sort(ORDER);
+        List<Path> files = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            files.add(folder.resolve(entry.name()));
+        }
+        return files;
+    }
+
+    private static DirectoryStream<Path> newCsvStream(Path folder) throws IOException {
+        return Files.newDirectoryStream(folder, file -> file.getFileName().toString().endsWith(".csv"));
+    }
+
+    /**
+     * The number formed by all digits of a file name, e.g. 12 for "dataset_part_12.csv". Names
+     * without digits, or with a number too large for a long, sort last.
+     */
+    public static long sequenceNumber(String name) {
+        long number = 0;
+        boolean digits = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (number > (Long.MAX_VALUE - (c - '0')) / 10) {
+                    return Long.MAX_VALUE;
+                }
+                number = number * 10 + (c - '0');
+                digits = true;
+            }
+        }
+        return digits ? number : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,199 @@
+package iapi.merge_data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Discovers new {@code .csv} files in the input folder through a {@link WatchService} (inotify on
+ * Linux) instead of listing the folder over and over.
+ *
+ * The WatchService reports creations and modifications but not when a writer closes the file, so a
+ * file is only handed out once it has been quiet (no event for it) for the settle time. A file
+ * renamed into the folder when complete (write to {@code .tmp}, then rename) gets a single create
+ * event and is handed out after one settle time.
+ *
+ * Events can be lost (the OVERFLOW event), so the folder is also scanned when the watcher starts,
+ * after an overflow and every reconcile interval. The scan picks up files that {@code known}
+ * rejects, i.e. that have not been processed yet. As nothing is known about how recently those
+ * changed, they are only handed out once their size stayed the same for a settle time.
+ *
+ * Not thread-safe; call {@link #take} from one thread.
+ */
+public class InputWatcher implements Closeable {
+
+    public static final long DEFAULT_SETTLE_MILLIS = 500;
+    public static final long DEFAULT_RECONCILE_MILLIS = 60_000;
+
+    private final Path folder;
+    private final Predicate<String> known;
+    private final long settleNanos;
+    private final long reconcileNanos;
+    private final WatchService watchService;
+    private final Map<Path, Candidate> candidates = new HashMap<>();
+
+    private long nextReconcileNanos;
+
+    /**
+     * A file that was seen but has not been handed out yet.
+     */
+    private static final class Candidate {
+        final boolean checkSize; // Found by a scan, so not covered by events
+        long size = -1;
+        long lastChangeNanos;
+
+        Candidate(long now, boolean checkSize) {
+            this.lastChangeNanos = now;
+            this.checkSize = checkSize;
+        }
+    }
+
+    /**
+     * @param folder          The input folder.
+     * @param known           Whether a file name was already processed; such files are ignored.
+     * @param settleMillis    How long a file has to be quiet before it is handed out.
+     * @param reconcileMillis Interval of the fallback scan.
+     */
+    public InputWatcher(Path folder, Predicate<String> known, long settleMillis, long reconcileMillis) throws IOException {
+        if (settleMillis < 0 || reconcileMillis <= 0) {
+            throw new IllegalArgumentException("Settle time must not be negative and the reconcile interval must be greater than 0.");
+        }
+        this.folder = folder;
+        this.known = known;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.reconcileNanos = TimeUnit.MILLISECONDS.toNanos(reconcileMillis);
+        this.watchService = folder.getFileSystem().newWatchService();
+        // Register before the first scan so nothing created in between is missed
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        reconcile();
+    }
+
+    /**
+     * Waits up to the timeout for files to become ready.
+     *
+     * @return The files that are complete, possibly none; each file is returned once.
+     */
+    public List<Path> take(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            long now = System.nanoTime();
+            if (now - nextReconcileNanos >= 0) {
+                reconcile();
+            }
+            List<Path> ready = collectReady(now);
+            if (!ready.isEmpty() || now - deadline >= 0) {
+                return ready;
+            }
+
+            // Sleep until the next event, the earliest settle time, the next scan or the deadline
+            long wake = Math.min(deadline, nextReconcileNanos);
+            for (Candidate candidate : candidates.values()) {
+                wake = Math.min(wake, candidate.lastChangeNanos + settleNanos);
+            }
+            WatchKey key;
+            try {
+                key = watchService.poll(Math.max(1, wake - now), TimeUnit.NANOSECONDS);
+            } catch (ClosedWatchServiceException e) {
+                throw new IOException("Input watcher is closed.", e);
+            }
+            if (key != null) {
+                handleEvents(key);
+            }
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        long now = System.nanoTime();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                System.out.println("Input watcher missed events; rescanning " + folder);
+                nextReconcileNanos = now;
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (isInput(name.toString())) {
+                candidates.computeIfAbsent(folder.resolve(name), path -> new Candidate(now, false)).lastChangeNanos = now;
+            }
+        }
+        if (!key.reset()) {
+            System.err.println("Input folder is no longer accessible: " + folder);
+        }
+    }
+
+    /**
+     * Removes and returns the candidates that have been quiet for the settle time and, for scanned
+     * ones, whose size did not change since they were last looked at.
+     */
+    private List<Path> collectReady(long now) {
+        List<Path> ready = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, Candidate>> iterator = candidates.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Path, Candidate> entry = iterator.next();
+            Candidate candidate = entry.getValue();
+            if (now - candidate.lastChangeNanos < settleNanos) {
+                continue;
+            }
+            long size;
+            try {
+                size = Files.size(entry.getKey());
+            } catch (IOException e) {
+                iterator.remove(); // Deleted or renamed away before it settled
+                continue;
+            }
+            if (!candidate.checkSize || size == candidate.size) {
+                iterator.remove();
+                if (!known.test(entry.getKey().getFileName().toString())) {
+                    ready.add(entry.getKey());
+                }
+            } else {
+                candidate.size = size; // Still growing without events reaching us; look again later
+                candidate.lastChangeNanos = now;
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Adds every unprocessed input in the folder that is not a candidate yet.
+     */
+    private void reconcile() throws IOException {
+        long now = System.nanoTime();
+        int added = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (isInput(name) && !candidates.containsKey(path) && !known.test(name)) {
+                    // Backdated so the first look records the size right away
+                    candidates.put(path, new Candidate(now - settleNanos, true));
+                    added++;
+                }
+            }
+        }
+        if (added > 0) {
+            System.out.printf("Input scan found %d unprocessed file(s).%n", added);
+        }
+        nextReconcileNanos = now + reconcileNanos;
+    }
+
+    private static boolean isInput(String name) {
+        return name.endsWith(".csv");
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,174 @@
+package iapi.merge_data;
+
+import iapi.convert_data.ParquetWriterPool;
+import iapi.convert_data.RobotDataBatch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passes the batches of files that are parsed in parallel to the writer pool strictly in file order,
+ * so the rows of file 7 all come before those of file 8.
+ *
+ * Files are numbered 0, 1, 2, ... in the order they are to be written. The batches of the lowest
+ * unfinished file, the head, are passed on right away; those of later files wait here until every
+ * file before them is finished. A worker that would buffer more than the limit blocks until the
+ * head moves on. The head's worker only waits for batches already on their way to the pool, and as
+ * files are started in order the head is always being parsed, so the buffer cannot deadlock.
+ *
+ * Batches are passed on outside the lock, so a full writer queue does not hold up the workers that
+ * only buffer. They are lined up under the lock and handed to the pool by one worker at a time, in
+ * that order. A file is only {@link ParquetWriterPool#finishSource finished} in the pool once its
+ * last batch has been passed on. If a batch cannot be passed on, its file fails and the rest of its
+ * batches are dropped.
+ *
+ * Thread-safe.
+ */
+class ReorderBuffer {
+
+    private final ParquetWriterPool writerPool;
+    private final List<String> sources;
+    private final int maxBufferedBatches;
+    private final Map<Integer, ArrayDeque<RobotDataBatch>> buffered = new HashMap<>();
+    private final boolean[] finished;
+    private final boolean[] failed; // Only used by the draining worker
+    private final ArrayDeque<Outgoing> outgoing = new ArrayDeque<>(); // In the order they are passed on
+
+    private int head;
+    private int bufferedBatches;
+    private int maxBuffered;
+    private long blockedNanos;
+    private boolean draining;
+
+    /**
+     * A batch of file {@code index} to pass on, or the end of that file if {@code batch} is null.
+     */
+    private record Outgoing(int index, RobotDataBatch batch) {
+    }
+
+    /**
+     * @param sources            Names of the files, in the order they are to be written.
+     * @param maxBufferedBatches How many batches of files after the head may be held.
+     */
+    ReorderBuffer(ParquetWriterPool writerPool, List<String> sources, int maxBufferedBatches) {
+        this.writerPool = writerPool;
+        this.sources = new ArrayList<>(sources);
+        this.maxBufferedBatches = maxBufferedBatches;
+        this.finished = new boolean[sources.size()];
+        this.failed = new boolean[sources.size()];
+    }
+
+    /**
+     * Passes on or buffers a batch of file {@code index}.
+     */
+    void write(int index, RobotDataBatch batch) throws IOException {
+        synchronized (this) {
+            long start = System.nanoTime();
+            try {
+                while ((index != head && bufferedBatches >= maxBufferedBatches) || outgoing.size() >= maxBufferedBatches) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for earlier files to be written.");
+            } finally {
+                blockedNanos += System.nanoTime() - start;
+            }
+            if (index == head) {
+                outgoing.add(new Outgoing(index, batch));
+            } else {
+                buffered.computeIfAbsent(index, key -> new ArrayDeque<>()).add(batch);
+                bufferedBatches++;
+                maxBuffered = Math.max(maxBuffered, bufferedBatches);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Marks file {@code index} as completely parsed. If it is the head, it and every finished file
+     * after it are finished in the pool, and the buffered batches of the new head are passed on.
+     */
+    void finish(int index) {
+        synchronized (this) {
+            finished[index] = true;
+            while (head < finished.length && finished[head]) {
+                outgoing.add(new Outgoing(head, null));
+                head++;
+                ArrayDeque<RobotDataBatch> batches = buffered.remove(head);
+                if (batches != null) {
+                    bufferedBatches -= batches.size();
+                    for (RobotDataBatch batch : batches) {
+                        outgoing.add(new Outgoing(head, batch));
+                    }
+                }
+            }
+            notifyAll();
+        }
+        drain();
+    }
+
+    /**
+     * Passes on everything lined up, without holding the lock while the pool takes it. If another
+     * worker is already draining, it passes on what this one lined up.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        try {
+            for (Outgoing next = nextOutgoing(); next != null; next = nextOutgoing()) {
+                pass(next);
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                draining = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return The next entry to pass on, or null after ending the drain if there is none.
+     */
+    private synchronized Outgoing nextOutgoing() {
+        Outgoing next = outgoing.poll();
+        if (next == null) {
+            draining = false;
+        } else {
+            notifyAll(); // Room for the head's worker
+        }
+        return next;
+    }
+
+    private void pass(Outgoing next) {
+        String source = sources.get(next.index());
+        if (next.batch() == null) {
+            writerPool.finishSource(source);
+        } else if (!failed[next.index()]) {
+            try {
+                writerPool.writeBatch(source, next.batch());
+            } catch (IOException | RuntimeException e) {
+                failed[next.index()] = true;
+                writerPool.failSource(source);
+                System.err.println("Error writing rows of " + source + ": " + e.getMessage());
+            }
+        }
+    }
+
+    synchronized int getMaxBuffered() {
+        return maxBuffered;
+    }
+
+    synchronized long getBlockedNanos() {
+        return blockedNanos;
+    }
+}
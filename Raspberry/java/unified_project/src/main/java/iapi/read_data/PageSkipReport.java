@@ -0,0 +1,276 @@
+package iapi.read_data;
+
+import iapi.convert_data.HadoopConfig;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.filter2.compat.RowGroupFilter;
+import org.apache.parquet.filter2.compat.RowGroupFilter.FilterLevel;
+import org.apache.parquet.filter2.predicate.FilterApi;
+import org.apache.parquet.filter2.predicate.FilterPredicate;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnPath;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.internal.column.columnindex.OffsetIndex;
+import org.apache.parquet.internal.filter2.columnindex.ColumnIndexFilter;
+import org.apache.parquet.internal.filter2.columnindex.RowRanges;
+import org.apache.parquet.schema.PrimitiveType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reports how much of a set of Parquet files a selective query has to read, and what lets it skip
+ * the rest: row group min/max statistics, dictionaries, bloom filters, and the column and offset
+ * indexes (page-level min/max).
+ *
+ * Run with: java -cp unified_project-1.0-SNAPSHOT.jar iapi.read_data.PageSkipReport --input=file-or-folder
+ * [--id=N] [--from=epochSeconds] [--to=epochSeconds] [--anomaly=N] [--safety=N]
+ */
+public class PageSkipReport {
+
+    private long files;
+    private long rowGroups;
+    private long pages;
+    private long bytes;
+    private long rowGroupsSkippedByStatistics;
+    private long rowGroupsSkippedByDictionary;
+    private long rowGroupsSkippedByBloomFilter;
+    private long pagesSkippedByStatistics;
+    private long pagesSkippedByDictionary;
+    private long pagesSkippedByBloomFilter;
+    private long pagesSkippedByPageIndex;
+    private long pagesRead;
+    private long bytesRead;
+
+    public static void main(String[] args) throws IOException {
+        String input = null;
+        Integer id = null;
+        Double from = null;
+        Double to = null;
+        Integer anomalyState = null;
+        Integer safetyStatus = null;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--input=")) {
+                input = value;
+            } else if (arg.startsWith("--id=")) {
+                id = Integer.parseInt(value);
+            } else if (arg.startsWith("--from=")) {
+                from = Double.parseDouble(value);
+            } else if (arg.startsWith("--to=")) {
+                to = Double.parseDouble(value);
+            } else if (arg.startsWith("--anomaly=")) {
+                anomalyState = Integer.parseInt(value);
+            } else if (arg.startsWith("--safety=")) {
+                safetyStatus = Integer.parseInt(value);
+            }
+        }
+        if (input == null) {
+            System.err.println("Usage: PageSkipReport --input=file-or-folder [--id=N] [--from=t1] [--to=t2] [--anomaly=N] [--safety=N]");
+            return;
+        }
+
+        Query query = new Query(id, from, to, anomalyState, safetyStatus);
+        System.out.printf("Query: %s%n", query);
+        System.out.println(analyze(parquetFiles(Path.of(input)), query, HadoopConfig.getHadoopConfiguration()).summary());
+    }
+
+    /**
+     * Query criteria; null criteria are left out. Timestamps are epoch seconds, inclusive.
+     */
+    public record Query(Integer id, Double from, Double to, Integer anomalyState, Integer safetyStatus) {
+
+        public static final Query ALL = new Query(null, null, null, null, null);
+
+        /**
+         * Builds the predicate for a file that stores Timestamp as double seconds, or as int64
+         * microseconds if {@code timestampMicros}.
+         *
+         * @return The predicate, or null if there are no criteria.
+         */
+        public FilterPredicate toPredicate(boolean timestampMicros) {
+            FilterPredicate predicate = null;
+            if (id != null) {
+                predicate = and(predicate, FilterApi.eq(FilterApi.intColumn("ID"), id));
+            }
+            if (from != null) {
+                predicate = and(predicate, timestampMicros
+                        ? FilterApi.gtEq(FilterApi.longColumn("Timestamp"), (long) Math.ceil(from * 1e6))
+                        : FilterApi.gtEq(FilterApi.doubleColumn("Timestamp"), from));
+            }
+            if (to != null) {
+                predicate = and(predicate, timestampMicros
+                        ? FilterApi.ltEq(FilterApi.longColumn("Timestamp"), (long) Math.floor(to * 1e6))
+                        : FilterApi.ltEq(FilterApi.doubleColumn("Timestamp"), to));
+            }
+            if (anomalyState != null) {
+                predicate = and(predicate, FilterApi.eq(FilterApi.intColumn("AnomalyState"), anomalyState));
+            }
+            if (safetyStatus != null) {
+                predicate = and(predicate, FilterApi.eq(FilterApi.intColumn("SafetyStatus"), safetyStatus));
+            }
+            return predicate;
+        }
+
+        private static FilterPredicate and(FilterPredicate left, FilterPredicate right) {
+            return left == null ? right : FilterApi.and(left, right);
+        }
+    }
+
+    /**
+     * Lists the Parquet files at {@code input}: the file itself, or every {@code .parquet} file below a folder.
+     */
+    public static List<Path> parquetFiles(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+        try (Stream<Path> paths = Files.walk(input)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".parquet"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Works out which pages of {@code files} {@code query} has to read.
+     */
+    public static PageSkipReport analyze(List<Path> files, Query query, Configuration conf) throws IOException {
+        PageSkipReport report = new PageSkipReport();
+        for (Path file : files) {
+            try (ParquetFileReader reader = ParquetFileReader.open(
+                    HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(file.toAbsolutePath().toString()), conf))) {
+                PrimitiveType timestamp = reader.getFileMetaData().getSchema().getType("Timestamp").asPrimitiveType();
+                FilterPredicate predicate = query.toPredicate(timestamp.getPrimitiveTypeName() == PrimitiveType.PrimitiveTypeName.INT64);
+                report.analyzeFile(reader, predicate == null ? FilterCompat.NOOP : FilterCompat.get(predicate));
+            }
+        }
+        return report;
+    }
+
+    private void analyzeFile(ParquetFileReader reader, FilterCompat.Filter filter) throws IOException {
+        files++;
+        List<BlockMetaData> blocks = reader.getRowGroups();
+        Set<BlockMetaData> afterStatistics = keptRowGroups(reader, filter, FilterLevel.STATISTICS);
+        Set<BlockMetaData> afterDictionary = keptRowGroups(reader, filter, FilterLevel.STATISTICS, FilterLevel.DICTIONARY);
+        Set<BlockMetaData> afterBloomFilter = keptRowGroups(reader, filter,
+                FilterLevel.STATISTICS, FilterLevel.DICTIONARY, FilterLevel.BLOOMFILTER);
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BlockMetaData block = blocks.get(i);
+            rowGroups++;
+            RowRanges rowRanges = null;
+            if (afterBloomFilter.contains(block)) {
+                Set<ColumnPath> paths = block.getColumns().stream().map(ColumnChunkMetaData::getPath).collect(Collectors.toSet());
+                rowRanges = ColumnIndexFilter.calculateRowRanges(filter, reader.getColumnIndexStore(i), paths, block.getRowCount());
+            } else if (!afterStatistics.contains(block)) {
+                rowGroupsSkippedByStatistics++;
+            } else if (!afterDictionary.contains(block)) {
+                rowGroupsSkippedByDictionary++;
+            } else {
+                rowGroupsSkippedByBloomFilter++;
+            }
+
+            for (ColumnChunkMetaData column : block.getColumns()) {
+                bytes += column.getTotalSize();
+                OffsetIndex offsetIndex = reader.readOffsetIndex(column);
+                int columnPages = offsetIndex == null ? 1 : offsetIndex.getPageCount();
+                pages += columnPages;
+                if (rowRanges == null) {
+                    if (!afterStatistics.contains(block)) {
+                        pagesSkippedByStatistics += columnPages;
+                    } else if (!afterDictionary.contains(block)) {
+                        pagesSkippedByDictionary += columnPages;
+                    } else {
+                        pagesSkippedByBloomFilter += columnPages;
+                    }
+                } else if (offsetIndex == null) {
+                    // Without a page index the whole column chunk is read
+                    pagesRead++;
+                    bytesRead += column.getTotalSize();
+                } else {
+                    countPages(column, offsetIndex, rowRanges, block.getRowCount());
+                }
+            }
+        }
+    }
+
+    private void countPages(ColumnChunkMetaData column, OffsetIndex offsetIndex, RowRanges rowRanges, long rowCount) {
+        long dataPageBytes = 0;
+        boolean anyRead = false;
+        for (int page = 0; page < offsetIndex.getPageCount(); page++) {
+            dataPageBytes += offsetIndex.getCompressedPageSize(page);
+            if (rowRanges.isOverlapping(offsetIndex.getFirstRowIndex(page), offsetIndex.getLastRowIndex(page, rowCount))) {
+                pagesRead++;
+                bytesRead += offsetIndex.getCompressedPageSize(page);
+                anyRead = true;
+            } else {
+                pagesSkippedByPageIndex++;
+            }
+        }
+        if (anyRead) {
+            bytesRead += column.getTotalSize() - dataPageBytes; // The dictionary page, if any
+        }
+    }
+
+    private static Set<BlockMetaData> keptRowGroups(ParquetFileReader reader, FilterCompat.Filter filter, FilterLevel... levels) {
+        Set<BlockMetaData> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(RowGroupFilter.filterRowGroups(List.of(levels), filter, reader.getRowGroups(), reader));
+        return kept;
+    }
+
+    public long getRowGroups() {
+        return rowGroups;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getRowGroupsSkippedByStatistics() {
+        return rowGroupsSkippedByStatistics;
+    }
+
+    public long getRowGroupsSkippedByDictionary() {
+        return rowGroupsSkippedByDictionary;
+    }
+
+    public long getRowGroupsSkippedByBloomFilter() {
+        return rowGroupsSkippedByBloomFilter;
+    }
+
+    public long getPagesSkippedByPageIndex() {
+        return pagesSkippedByPageIndex;
+    }
+
+    public long getPagesRead() {
+        return pagesRead;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public String summary() {
+        return String.format("Files: %d, row groups: %d, pages: %d, bytes: %d%n"
+                        + "Row groups skipped: %d by statistics, %d by dictionaries, %d by bloom filters%n"
+                        + "Pages skipped: %d by statistics, %d by dictionaries, %d by bloom filters, %d by page indexes%n"
+                        + "Read: %d of %d pages, %d of %d bytes (%.2f%%)",
+                files, rowGroups, pages, bytes,
+                rowGroupsSkippedByStatistics, rowGroupsSkippedByDictionary, rowGroupsSkippedByBloomFilter,
+                pagesSkippedByStatistics, pagesSkippedByDictionary, pagesSkippedByBloomFilter, pagesSkippedByPageIndex,
+                pagesRead, pages, bytesRead, bytes, bytes == 0 ? 0.0 : 100.0 * bytesRead / bytes);
+    }
+}
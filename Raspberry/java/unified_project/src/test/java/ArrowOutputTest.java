@@ -0,0 +1,158 @@
+import iapi.convert_data.ArrowOutput;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.ParquetWriterPool;
+import iapi.convert_data.RobotDataLayout;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.FixedSizeListVector;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ArrowOutputTest {
+
+
+    private static final int SCALAR = RobotDataLayout.position("RobotCurrent");
+
+    private static List<File> arrowFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(Path::toFile).filter(file -> file.getName().endsWith(".arrow")).sorted().toList();
+        }
+    }
+
+    @Test
+    public void testFileHoldsTheBatchValues(@TempDir Path dir) throws Exception {
+        ParquetWriterOptions options = new ParquetWriterOptions().withTimestampMicros(true);
+        try (ArrowOutput output = new ArrowOutput(dir.toFile(), "robots_", options)) {
+            output.write(TestBatches.sequential(0, 100));
+            output.write(TestBatches.sequential(100, 50));
+            assertEquals(150, output.getRowsWritten());
+        }
+
+        List<File> files = arrowFiles(dir);
+        assertEquals(List.of("robots_1.arrow"), files.stream().map(File::getName).toList());
+        try (BufferAllocator allocator = new RootAllocator();
+             FileChannel channel = FileChannel.open(files.get(0).toPath());
+             ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+            assertEquals(2, reader.getRecordBlocks().size());
+            int row = 0;
+            while (reader.loadNextBatch()) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                IntVector ids = (IntVector) root.getVector("ID");
+                TimeStampMicroTZVector timestamps = (TimeStampMicroTZVector) root.getVector("Timestamp");
+                Float8Vector scalars = (Float8Vector) root.getVector(SCALAR);
+                for (int i = 0; i < root.getRowCount(); i++, row++) {
+                    assertEquals(row % 5, ids.get(i));
+                    assertEquals(1699999200_000_000L + row * 250_000L, timestamps.get(i));
+                    assertEquals(row + SCALAR / 100.0, scalars.get(i));
+                }
+                for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+                    if (RobotDataLayout.width(pos) > 0) {
+                        FixedSizeListVector vectors = (FixedSizeListVector) root.getVector(pos);
+                        assertEquals(RobotDataLayout.width(pos), vectors.getListSize());
+                        int first = row - root.getRowCount();
+                        assertEquals(List.of(first * 10.0, first * 10.0 + 1), vectors.getObject(0).subList(0, 2));
+                    }
+                }
+            }
+            assertEquals(150, row);
+        }
+    }
+
+    @Test
+    public void testSocketClientsAndListenersReceiveBatches(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("arrow.sock");
+        ParquetWriterOptions options = new ParquetWriterOptions().withArrowSocket(socket);
+        List<Integer> listenerRows = new ArrayList<>();
+        List<Integer> streamRows = new ArrayList<>();
+        ArrowOutput output = new ArrowOutput(dir.toFile(), "robots_", options);
+        output.addListener(root -> listenerRows.add(root.getRowCount()));
+        output.write(TestBatches.sequential(0, 10)); // Before the client connects, so not streamed
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+             BufferAllocator allocator = new RootAllocator()) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            ArrowStreamReader reader = new ArrowStreamReader(channel, allocator);
+            reader.getVectorSchemaRoot(); // Waits for the schema, i.e. until the client is registered
+            output.write(TestBatches.sequential(10, 20));
+            output.write(TestBatches.sequential(30, 30));
+            output.close(); // Ends the stream
+            while (reader.loadNextBatch()) {
+                VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                streamRows.add(root.getRowCount());
+                assertEquals(1699999200.0 + (streamRows.size() == 1 ? 10 : 30) / 4.0,
+                        ((Float8Vector) root.getVector("Timestamp")).get(0));
+            }
+            reader.close();
+        } finally {
+            output.close();
+        }
+
+        assertEquals(List.of(10, 20, 30), listenerRows);
+        assertEquals(List.of(20, 30), streamRows);
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void testClientThatStopsReadingIsDisconnected(@TempDir Path dir) throws Exception {
+        Path socket = dir.resolve("arrow.sock");
+        ParquetWriterOptions options = new ParquetWriterOptions().withArrowSocket(socket);
+        try (ArrowOutput output = new ArrowOutput(dir.toFile(), "robots_", options);
+             SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+             BufferAllocator allocator = new RootAllocator()) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            ArrowStreamReader reader = new ArrowStreamReader(channel, allocator);
+            reader.getVectorSchemaRoot(); // Registered; nothing is read from here on
+            // Far more than the socket buffer and the client's queue hold
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int i = 0; i < 200; i++) {
+                    output.write(TestBatches.sequential(i * 1000, 1000));
+                }
+            });
+            assertEquals(200_000, output.getRowsWritten());
+        }
+    }
+
+    @Test
+    public void testArrowOnlyWritesNoParquet(@TempDir Path dir) throws Exception {
+        ParquetWriterOptions options = new ParquetWriterOptions().withArrowOutput(ParquetWriterOptions.ArrowMode.ONLY);
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("merged.parquet").toString(),
+                new PlainParquetConfiguration(), options);
+        List<String> committed = new ArrayList<>();
+        pool.onSourceCommitted(committed::add);
+        pool.writeBatch("a.csv", TestBatches.sequential(0, 40));
+        pool.finishSource("a.csv");
+        assertEquals(List.of(), committed); // Its rows are still in the in-progress Arrow file
+        pool.shutdown();
+        assertEquals(List.of("a.csv"), committed);
+
+        assertEquals(40, pool.getArrowOutput().getRowsWritten());
+        assertEquals(List.of("merged_1.arrow"), arrowFiles(dir).stream().map(File::getName).toList());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".parquet")));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.WriterMemoryManager;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncFlushTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private static final int ROWS = 8000;
+
+    private final Configuration conf = HadoopConfig.getHadoopConfiguration();
+
+    private static void write(Path file, RobotDataBatch batch, WriterMemoryManager memoryManager,
+                              ExecutorService flushExecutor) throws Exception {
+        ParquetWriterOptions options = new ParquetWriterOptions();
+        try (RobotDataFileWriter writer = new RobotDataFileWriter(new NioOutputFile(file), new PlainParquetConfiguration(),
+                options, memoryManager, flushExecutor)) {
+            TestBatches.writeRows(writer, batch, true);
+        }
+    }
+
+    private List<Long> rowGroupSizes(Path file) throws Exception {
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(file.toString()), conf))) {
+            return reader.getRowGroups().stream().map(BlockMetaData::getRowCount).toList();
+        }
+    }
+
+    @Test
+    public void testAsyncFlushWritesSameRowGroupsInOrder(@TempDir Path dir) throws Exception {
+        RobotDataBatch batch = TestBatches.random(ROWS, 16);
+        Path syncFile = dir.resolve("sync.parquet");
+        Path asyncFile = dir.resolve("async.parquet");
+        write(syncFile, batch, new WriterMemoryManager(1 * MB, 1 * MB), null);
+
+        WriterMemoryManager memoryManager = new WriterMemoryManager(1 * MB, 1 * MB);
+        ExecutorService flushExecutor = Executors.newSingleThreadExecutor();
+        try {
+            write(asyncFile, batch, memoryManager, flushExecutor);
+        } finally {
+            flushExecutor.shutdown();
+        }
+
+        List<Long> rowGroups = rowGroupSizes(asyncFile);
+        assertTrue(rowGroups.size() > 2, rowGroups.toString());
+        assertEquals(rowGroupSizes(syncFile), rowGroups);
+        assertEquals(0, memoryManager.getBufferedBytes());
+
+        int row = 0;
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(
+                HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(asyncFile.toString()), conf)).build()) {
+            for (GenericRecord record = reader.read(); record != null; record = reader.read(), row++) {
+                assertEquals((double) row, record.get("Timestamp"));
+            }
+        }
+        assertEquals(ROWS, row);
+    }
+
+    @Test
+    public void testFailedFlushReleasesBufferedMemory(@TempDir Path dir) throws Exception {
+        RobotDataBatch batch = TestBatches.random(ROWS, 16);
+        WriterMemoryManager memoryManager = new WriterMemoryManager(1 * MB, 1 * MB);
+        ExecutorService flushExecutor = Executors.newSingleThreadExecutor();
+        try {
+            OutputFile file = new FailingOutputFile(new NioOutputFile(dir.resolve("failing.parquet")), MB / 4);
+            RobotDataFileWriter writer = new RobotDataFileWriter(file, new PlainParquetConfiguration(),
+                    new ParquetWriterOptions(), memoryManager, flushExecutor);
+            assertThrows(IOException.class, () -> {
+                try (writer) {
+                    TestBatches.writeRows(writer, batch, true);
+                }
+            });
+        } finally {
+            flushExecutor.shutdown();
+        }
+        assertEquals(0, memoryManager.getBufferedBytes());
+        assertEquals(0, memoryManager.getOpenFiles());
+    }
+
+    /**
+     * Fails every write once the limit is reached, like a full disk.
+     */
+    private static final class FailingOutputFile implements OutputFile {
+        private final OutputFile file;
+        private final long limit;
+
+        FailingOutputFile(OutputFile file, long limit) {
+            this.file = file;
+            this.limit = limit;
+        }
+
+        @Override
+        public PositionOutputStream create(long blockSizeHint) throws IOException {
+            return wrap(file.create(blockSizeHint));
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) throws IOException {
+            return wrap(file.createOrOverwrite(blockSizeHint));
+        }
+
+        private PositionOutputStream wrap(PositionOutputStream out) {
+            return new PositionOutputStream() {
+                @Override
+                public long getPos() throws IOException {
+                    return out.getPos();
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (out.getPos() + len > limit) {
+                        throw new IOException("No space left on device");
+                    }
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    out.close();
+                }
+            };
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+
+import iapi.convert_data.CSVTokenizer;
+import iapi.convert_data.DataValidator;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CSVTokenizerTest {
+
+    private static final String CSV = "\"ID\",\"Timestamp\",\"Actual Joint Positions\", Note \r\n"
+            + "\"1\",\"1700000000.05\",\"[0.1, -2.5, 3e-4]\",\"say \"\"hi\"\"\"\r\n"
+            + "\n"
+            + "2, 1700000000.10 ,\"[]\",plain\n"
+            + "3,1700000000.15,\"[1.0,2.0]\",last";
+
+    @Test
+    public void testMatchesCommonsCsvAcrossBufferSizes() throws Exception {
+        List<List<String>> expected = new ArrayList<>();
+        try (CSVParser parser = CSVFormat.DEFAULT.builder()
+                .setIgnoreSurroundingSpaces(true)
+                .build()
+                .parse(new StringReader(CSV))) {
+            for (CSVRecord record : parser) {
+                expected.add(record.toList());
+            }
+        }
+
+        for (int bufferSize : new int[]{4, 7, 16, 64 * 1024}) {
+            byte[] bytes = CSV.getBytes(StandardCharsets.US_ASCII);
+            try (CSVTokenizer tokenizer = new CSVTokenizer(Channels.newChannel(new ByteArrayInputStream(bytes)), bufferSize)) {
+                List<List<String>> actual = new ArrayList<>();
+                actual.add(List.of(tokenizer.header()));
+                while (tokenizer.nextRow()) {
+                    List<String> row = new ArrayList<>();
+                    for (int i = 0; i < tokenizer.fieldCount(); i++) {
+                        row.add(tokenizer.fieldAsString(i));
+                    }
+                    actual.add(row);
+                }
+                assertEquals(expected, actual, "buffer size " + bufferSize);
+            }
+        }
+    }
+
+    @Test
+    public void testByteParsersMatchStringParsers() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String text = switch (i % 4) {
+                case 0 -> Double.toString(random.nextGaussian() * 1000);
+                case 1 -> String.format("%.6f", random.nextDouble() * 360 - 180);
+                case 2 -> String.format("%.3e", random.nextDouble() * 1e-3);
+                default -> Long.toString(random.nextLong() % 100000) + "." + (random.nextInt(1000));
+            };
+            byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(Double.parseDouble(text), DataValidator.parseDouble(bytes, 0, bytes.length), text);
+        }
+
+        byte[] array = "[0.1, -2.5 ,3e-4,]".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(DataValidator.parseArray("[0.1, -2.5 ,3e-4,]"), DataValidator.parseArray(array, 0, array.length));
+
+        byte[] id = "-2147483648".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(Integer.MIN_VALUE, DataValidator.parseInt(id, 0, id.length));
+        byte[] tooLarge = "2147483648".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IllegalArgumentException.class, () -> DataValidator.parseInt(tooLarge, 0, tooLarge.length));
+        byte[] notANumber = "nan".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(IllegalArgumentException.class, () -> DataValidator.parseDouble(notANumber, 0, notANumber.length));
+    }
+}
@@ -0,0 +1,90 @@
+import iapi.benchmark.SampleData;
+import iapi.convert_data.CheckpointStore;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.merge_data.FileMerger;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CheckpointStoreTest {
+
+    @Test
+    public void testChangesSurviveReopeningAndTornRecordsAreIgnored(@TempDir Path dir) throws Exception {
+        try (CheckpointStore store = new CheckpointStore(dir)) {
+            store.put("input:dataset_part_1.csv", 100);
+            store.put("input:name with spaces.csv", 200);
+            store.put("series:merged_", 3);
+            store.remove("input:dataset_part_1.csv");
+        }
+        // A record cut short by a crash
+        Files.writeString(dir.resolve(CheckpointStore.LOG_NAME), "P 4 series:mer", StandardOpenOption.APPEND);
+
+        try (CheckpointStore store = new CheckpointStore(dir)) {
+            assertFalse(store.contains("input:dataset_part_1.csv"));
+            assertEquals(200, store.get("input:name with spaces.csv", -1));
+            assertEquals(3, store.get("series:merged_", -1));
+            store.put("series:merged_", 5);
+        }
+        try (CheckpointStore store = new CheckpointStore(dir)) {
+            assertEquals(5, store.get("series:merged_", -1));
+            assertEquals(2, store.size());
+        }
+    }
+
+    @Test
+    public void testLogIsFoldedIntoSnapshot(@TempDir Path dir) throws Exception {
+        try (CheckpointStore store = new CheckpointStore(dir)) {
+            for (int i = 0; i < 5000; i++) {
+                store.put("series:merged_", i);
+            }
+            store.put("input:a.csv", 1);
+        }
+        // Only the live keys are kept, so the files stay small however often a key changes
+        assertTrue(Files.size(dir.resolve(CheckpointStore.LOG_NAME)) + Files.size(dir.resolve(CheckpointStore.SNAPSHOT_NAME)) < 64 * 1024);
+        try (CheckpointStore store = new CheckpointStore(dir)) {
+            assertEquals(4999, store.get("series:merged_", -1));
+            assertEquals(1, store.get("input:a.csv", -1));
+        }
+    }
+
+    @Test
+    public void testRestartedMergerSkipsProcessedInputsAndContinuesNumbering(@TempDir Path dir) throws Exception {
+        Path input = Files.createDirectories(dir.resolve("input"));
+        String output = dir.resolve("output/merged.parquet").toString();
+        ParquetWriterOptions options = new ParquetWriterOptions().withCheckpointing(true);
+        SampleData data = new SampleData(22);
+        data.writeCsv(input.resolve("dataset_part_1.csv"), 300, 1, 1.7e9);
+        data.writeCsv(input.resolve("dataset_part_2.csv"), 300, 1, 1.7e9 + 60);
+
+        FileMerger merger = new FileMerger(input.toString(), output, new PlainParquetConfiguration(), options);
+        merger.mergeFilesConcurrently();
+        // The rows are still in the open file, which would be lost in a crash, so nothing is committed yet
+        assertTrue(merger.isProcessed("dataset_part_1.csv"));
+        try (CheckpointStore store = new CheckpointStore(dir.resolve("output"))) {
+            assertFalse(store.contains("input:dataset_part_1.csv"));
+        }
+        merger.stop();
+
+        data.writeCsv(input.resolve("dataset_part_3.csv"), 300, 1, 1.7e9 + 120);
+        Files.delete(input.resolve("dataset_part_1.csv"));
+        merger = new FileMerger(input.toString(), output, new PlainParquetConfiguration(), options);
+        assertTrue(merger.isProcessed("dataset_part_2.csv"));
+        assertFalse(merger.isProcessed("dataset_part_1.csv")); // Dropped with the input
+        merger.mergeFilesConcurrently();
+        merger.stop();
+
+        List<OutputManifest.Entry> outputs = new OutputManifest(dir.resolve("output")).read();
+        assertEquals(List.of("merged_1.parquet", "merged_2.parquet"), outputs.stream().map(OutputManifest.Entry::path).toList());
+        assertEquals(List.of(600L, 300L), outputs.stream().map(OutputManifest.Entry::rows).toList());
+    }
+}
@@ -0,0 +1,43 @@
+
+import iapi.benchmark.SampleData;
+import iapi.convert_data.ColumnBinding;
+import iapi.convert_data.RobotData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnBindingTest {
+
+    @Test
+    public void testBindsReorderedHeaderBySchemaName() {
+        List<String> header = new ArrayList<>(List.of(SampleData.HEADER));
+        Collections.reverse(header);
+        header.add("Unused Column");
+
+        ColumnBinding binding = ColumnBinding.forHeader(header.toArray(new String[0]));
+
+        int pos = RobotData.getClassSchema().getField("TemperatureOfEachJoint").pos();
+        assertEquals(header.indexOf("Temperature of Each Joint"), binding.column(pos));
+        assertEquals(header.indexOf("ID"), binding.column(RobotData.getClassSchema().getField("ID").pos()));
+    }
+
+    @Test
+    public void testRejectsMisspelledHeader() {
+        String[] header = SampleData.HEADER.clone();
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals("Norm of Cartesian Linear Momentum")) {
+                header[i] = "Norm of Cartesion Linear Momentum";
+            }
+        }
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ColumnBinding.forHeader(header));
+        assertTrue(e.getMessage().contains("NormOfCartesianLinearMomentum"), e.getMessage());
+        assertTrue(e.getMessage().contains("Norm of Cartesion Linear Momentum"), e.getMessage());
+    }
+}
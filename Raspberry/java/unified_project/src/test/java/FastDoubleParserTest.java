@@ -0,0 +1,66 @@
+
+import iapi.convert_data.FastDoubleParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FastDoubleParserTest {
+
+    private static void assertParsesLikeJdk(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        assertEquals(Double.parseDouble(text), FastDoubleParser.parse(bytes, 0, bytes.length), text);
+    }
+
+    @Test
+    public void testRandomBitPatterns() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500_000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                continue;
+            }
+            assertParsesLikeJdk(Double.toString(value));
+            assertParsesLikeJdk(String.format("%.17e", value));
+        }
+    }
+
+    @Test
+    public void testRandomDecimalStrings() {
+        Random random = new Random(11);
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder builder = new StringBuilder();
+            if (random.nextBoolean()) {
+                builder.append('-');
+            }
+            int digits = 1 + random.nextInt(25);
+            for (int d = 0; d < digits; d++) {
+                builder.append((char) ('0' + random.nextInt(10)));
+            }
+            builder.insert(builder.length() - random.nextInt(digits), '.');
+            if (random.nextInt(3) == 0) {
+                builder.append('e').append(random.nextInt(700) - 350);
+            }
+            assertParsesLikeJdk(builder.toString());
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        String[] cases = {
+                "0", "-0.0", "1", "1.", ".5", "+2.5", "4.9e-324", "2.4703282292062327e-324", "2.4703282292062328e-324",
+                "2.2250738585072011e-308", "2.2250738585072014e-308", "1.7976931348623157e308", "1.7976931348623159e308",
+                "9007199254740993", "9007199254740992.5", "0.1", "0.3", "123456789012345678901234567890",
+                "0.00000000000000000000000000000000001", "1e23", "8.41e21", "9.999999999999999e22",
+                "1700000000.05", "NaN", "-Infinity", "1e400", "1e-400"
+        };
+        for (String text : cases) {
+            assertParsesLikeJdk(text);
+        }
+        byte[] invalid = "1.2.3".getBytes(StandardCharsets.US_ASCII);
+        assertThrows(NumberFormatException.class, () -> FastDoubleParser.parse(invalid, 0, invalid.length));
+    }
+}
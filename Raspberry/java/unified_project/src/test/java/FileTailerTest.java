@@ -0,0 +1,100 @@
+import iapi.benchmark.SampleData;
+import iapi.convert_data.CSVTokenizer;
+import iapi.convert_data.CheckpointStore;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.merge_data.FileMerger;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTailerTest {
+
+    private static final double START = 1.7e9;
+
+    private static void append(Path file, String text) throws Exception {
+        Files.writeString(file, text, StandardCharsets.US_ASCII, StandardOpenOption.APPEND);
+    }
+
+    private static String rows(SampleData data, int count, double start) {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            rows.append(data.row(1, start + i * 0.05)).append('\n');
+        }
+        return rows.toString();
+    }
+
+    @Test
+    public void testTokenizerStopsBeforeUnfinishedRow(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("growing.csv");
+        Files.writeString(file, "\"a\",\"b\"");
+        assertNull(CSVTokenizer.tail(file, 0)); // Header not finished
+
+        Files.writeString(file, "\"a\",\"b\"\n1,2\n3,");
+        long offset;
+        try (CSVTokenizer tokenizer = CSVTokenizer.tail(file, 0)) {
+            assertTrue(tokenizer.nextRow());
+            assertEquals("1", tokenizer.fieldAsString(0));
+            assertFalse(tokenizer.nextRow());
+            offset = tokenizer.offset();
+        }
+        assertEquals("\"a\",\"b\"\n1,2\n".length(), offset);
+
+        append(file, "4\r\n5,6\n");
+        try (CSVTokenizer tokenizer = CSVTokenizer.tail(file, offset)) {
+            assertEquals("b", tokenizer.header()[1]);
+            assertTrue(tokenizer.nextRow());
+            assertEquals("4", tokenizer.fieldAsString(1));
+            assertTrue(tokenizer.nextRow());
+            assertEquals("5", tokenizer.fieldAsString(0));
+            assertFalse(tokenizer.nextRow());
+            assertEquals(Files.size(file), tokenizer.offset());
+        }
+    }
+
+    @Test
+    public void testOnlyAppendedRowsAreReadAcrossRestarts(@TempDir Path dir) throws Exception {
+        Path input = Files.createDirectories(dir.resolve("input"));
+        Path file = input.resolve("robot_1.csv");
+        String output = dir.resolve("output/merged.parquet").toString();
+        ParquetWriterOptions options = new ParquetWriterOptions().withCheckpointing(true);
+        SampleData data = new SampleData(24);
+        data.writeCsv(file, 300, 1, START);
+        String next = rows(data, 151, START + 15);
+        int firstRowEnd = next.indexOf('\n') + 1;
+        append(file, next.substring(0, 40)); // Still being written
+
+        FileMerger merger = new FileMerger(input.toString(), output, new PlainParquetConfiguration(), options);
+        assertEquals(300, merger.tailFiles());
+        assertEquals(0, merger.tailFiles());
+        append(file, next.substring(40, firstRowEnd));
+        assertEquals(1, merger.tailFiles());
+        int secondRowEnd = next.indexOf('\n', firstRowEnd) + 1;
+        append(file, next.substring(firstRowEnd, secondRowEnd + 10));
+        assertEquals(1, merger.tailFiles());
+        merger.stop(); // Publishes the open file, which commits the offsets
+
+        try (CheckpointStore store = new CheckpointStore(dir.resolve("output"))) {
+            assertEquals(Files.size(file) - 10, store.get("offset:robot_1.csv", -1));
+        }
+
+        // Restarted: continues after the last complete row
+        append(file, next.substring(secondRowEnd + 10));
+        merger = new FileMerger(input.toString(), output, new PlainParquetConfiguration(), options);
+        assertEquals(149, merger.tailFiles());
+        merger.stop();
+
+        long rows = new OutputManifest(dir.resolve("output")).read().stream().mapToLong(OutputManifest.Entry::rows).sum();
+        assertEquals(451, rows);
+    }
+}
@@ -0,0 +1,86 @@
+import iapi.benchmark.SampleData;
+import iapi.convert_data.CheckpointStore;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.merge_data.FileMerger;
+import iapi.merge_data.InputIndex;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InputIndexTest {
+
+    private static List<String> names(List<Path> files) {
+        return files.stream().map(file -> file.getFileName().toString()).toList();
+    }
+
+    @Test
+    public void testSequenceNumbers() {
+        assertEquals(12, InputIndex.sequenceNumber("dataset_part_12.csv"));
+        assertEquals(20240101, InputIndex.sequenceNumber("robot_2024-01-01.csv"));
+        assertEquals(Long.MAX_VALUE, InputIndex.sequenceNumber("latest.csv"));
+        assertEquals(Long.MAX_VALUE, InputIndex.sequenceNumber("part_99999999999999999999.csv"));
+    }
+
+    @Test
+    public void testScanAddsNewFilesInOrder(@TempDir Path dir) throws Exception {
+        for (String name : List.of("dataset_part_10.csv", "dataset_part_2.csv", "notes.txt", "dataset_part_1.csv", "latest.csv")) {
+            Files.createFile(dir.resolve(name));
+        }
+        InputIndex index = new InputIndex(dir);
+        Predicate<String> processed = name -> name.equals("dataset_part_1.csv");
+        assertEquals(3, index.scan(processed));
+        assertEquals(0, index.scan(processed)); // Already pending
+
+        Files.createFile(dir.resolve("dataset_part_3.csv"));
+        Files.delete(dir.resolve("dataset_part_10.csv"));
+        assertEquals(1, index.scan(processed));
+        assertFalse(index.add(dir.resolve("dataset_part_3.csv"), name -> false));
+        assertTrue(index.add(dir.resolve("dataset_part_1.csv"), name -> false));
+
+        assertEquals(List.of("dataset_part_1.csv", "dataset_part_2.csv", "dataset_part_3.csv", "latest.csv"), names(index.takeAll()));
+        assertEquals(0, index.size());
+        assertEquals(List.of("dataset_part_1.csv", "dataset_part_2.csv", "dataset_part_3.csv", "latest.csv"), names(InputIndex.list(dir)));
+    }
+
+    @Test
+    public void testProcessedInputsAreArchived(@TempDir Path dir) throws Exception {
+        Path input = Files.createDirectories(dir.resolve("input"));
+        Path archive = dir.resolve("archive");
+        String output = dir.resolve("output/merged.parquet").toString();
+        ParquetWriterOptions options = new ParquetWriterOptions().withCheckpointing(true).withArchiveFolder(archive);
+        SampleData data = new SampleData(25);
+        data.writeCsv(input.resolve("dataset_part_1.csv"), 300, 1, 1.7e9);
+        data.writeCsv(input.resolve("dataset_part_2.csv"), 300, 1, 1.7e9 + 60);
+
+        FileMerger merger = new FileMerger(input.toString(), output, new PlainParquetConfiguration(), options);
+        merger.mergeFilesConcurrently();
+        merger.stop(); // Publishes the rows, which commits and then moves the inputs
+
+        assertEquals(List.of(), names(InputIndex.list(input)));
+        assertEquals(List.of("dataset_part_1.csv", "dataset_part_2.csv"), names(InputIndex.list(archive)));
+        try (CheckpointStore store = new CheckpointStore(dir.resolve("output"))) {
+            assertEquals(List.of(), store.keys("input:")); // Moved, so no longer needed
+        }
+
+        // A new file under an archived name is a new input
+        data.writeCsv(input.resolve("dataset_part_1.csv"), 200, 1, 1.7e9 + 120);
+        merger = new FileMerger(input.toString(), output, new PlainParquetConfiguration(), options);
+        merger.mergeFilesConcurrently();
+        merger.stop();
+
+        List<OutputManifest.Entry> outputs = new OutputManifest(dir.resolve("output")).read();
+        assertEquals(List.of(600L, 200L), outputs.stream().map(OutputManifest.Entry::rows).toList());
+        assertEquals(Set.of("dataset_part_1.csv", "dataset_part_2.csv"), Set.copyOf(names(InputIndex.list(archive))));
+    }
+}
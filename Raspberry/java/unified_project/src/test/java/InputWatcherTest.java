@@ -0,0 +1,78 @@
+import iapi.merge_data.InputWatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InputWatcherTest {
+
+    private static final long SETTLE_MILLIS = 200;
+
+    /**
+     * Takes files until the expected number arrived or the timeout passed.
+     */
+    private static List<String> takeNames(InputWatcher watcher, int expected, long timeoutMillis) throws Exception {
+        List<String> names = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (names.size() < expected && System.currentTimeMillis() < deadline) {
+            for (Path path : watcher.take(100, TimeUnit.MILLISECONDS)) {
+                names.add(path.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void testNewFileIsReturnedOnceAfterSettling(@TempDir Path dir) throws Exception {
+        try (InputWatcher watcher = new InputWatcher(dir, name -> false, SETTLE_MILLIS, 60_000)) {
+            assertTrue(watcher.take(50, TimeUnit.MILLISECONDS).isEmpty());
+
+            Path tmp = dir.resolve("dataset_part_1.csv.tmp");
+            Files.writeString(tmp, "ID,Timestamp\n1,2\n");
+            Files.move(tmp, dir.resolve("dataset_part_1.csv"), StandardCopyOption.ATOMIC_MOVE);
+            Files.writeString(dir.resolve("notes.txt"), "ignored");
+
+            assertEquals(List.of("dataset_part_1.csv"), takeNames(watcher, 1, 5000));
+            assertTrue(takeNames(watcher, 1, 3 * SETTLE_MILLIS).isEmpty());
+        }
+    }
+
+    @Test
+    public void testGrowingFileIsHeldBackUntilQuiet(@TempDir Path dir) throws Exception {
+        try (InputWatcher watcher = new InputWatcher(dir, name -> false, SETTLE_MILLIS, 60_000)) {
+            try (OutputStream out = Files.newOutputStream(dir.resolve("dataset_part_2.csv"))) {
+                for (int i = 0; i < 8; i++) {
+                    out.write("1,2\n".getBytes());
+                    out.flush();
+                    for (Path path : watcher.take(SETTLE_MILLIS / 4, TimeUnit.MILLISECONDS)) {
+                        throw new AssertionError("Returned while still written: " + path);
+                    }
+                }
+            }
+            assertEquals(List.of("dataset_part_2.csv"), takeNames(watcher, 1, 5000));
+        }
+    }
+
+    @Test
+    public void testScanPicksUpExistingUnprocessedFiles(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("dataset_part_1.csv"), "done");
+        Files.writeString(dir.resolve("dataset_part_2.csv"), "new");
+        Files.writeString(dir.resolve("dataset_part_3.csv"), "new");
+        Set<String> processed = Set.of("dataset_part_1.csv");
+
+        try (InputWatcher watcher = new InputWatcher(dir, processed::contains, SETTLE_MILLIS, 60_000)) {
+            assertEquals(Set.of("dataset_part_2.csv", "dataset_part_3.csv"), new HashSet<>(takeNames(watcher, 2, 5000)));
+        }
+    }
+}
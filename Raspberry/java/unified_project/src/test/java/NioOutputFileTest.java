@@ -0,0 +1,76 @@
+
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.ParquetProfile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.RobotDataLayout;
+import iapi.convert_data.WriterMemoryManager;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NioOutputFileTest {
+
+    private static final int ROWS = 3000;
+
+    private final Configuration conf = HadoopConfig.getHadoopConfiguration();
+
+    @Test
+    public void testEveryProfileReadsBack(@TempDir Path dir) throws Exception {
+        RobotDataBatch batch = new RobotDataBatch(ROWS);
+        for (int row = 0; row < ROWS; row++) {
+            batch.setInt(RobotDataLayout.position("ID"), row, row % 5);
+            batch.setDouble(RobotDataLayout.position("Timestamp"), row, 1700000000.0 + row * 0.05);
+            batch.setDouble(RobotDataLayout.position("RobotCurrent"), row, Math.sin(row));
+            batch.commitRow();
+        }
+
+        for (ParquetProfile profile : ParquetProfile.values()) {
+            Path file = dir.resolve(profile.name() + ".parquet");
+            // Small pages so every column is compressed in several pieces
+            ParquetWriterOptions options = new ParquetWriterOptions().withProfile(profile).withPageRowCountLimit(500);
+            try (RobotDataFileWriter writer = new RobotDataFileWriter(new NioOutputFile(file), new PlainParquetConfiguration(),
+                    options, new WriterMemoryManager(options))) {
+                TestBatches.writeRows(writer, batch, true);
+            }
+
+            org.apache.hadoop.fs.Path path = new org.apache.hadoop.fs.Path(file.toString());
+            try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(path, conf))) {
+                assertEquals(profile.getCodec(), reader.getRowGroups().get(0).getColumns().get(0).getCodec());
+            }
+            int row = 0;
+            try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(HadoopInputFile.fromPath(path, conf)).build()) {
+                for (GenericRecord record = reader.read(); record != null; record = reader.read(), row++) {
+                    assertEquals(row % 5, record.get("ID"), profile.name());
+                    assertEquals(Math.sin(row), (Double) record.get("RobotCurrent"), 0.0, profile.name());
+                }
+            }
+            assertEquals(ROWS, row, profile.name());
+        }
+    }
+
+    @Test
+    public void testCreateRefusesExistingFile(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("existing.parquet");
+        Files.writeString(file, "x");
+        assertThrows(FileAlreadyExistsException.class, () -> new NioOutputFile(file).create(0));
+        new NioOutputFile(file).createOrOverwrite(0).close();
+        assertEquals(List.of(), Files.readAllLines(file));
+    }
+}
@@ -0,0 +1,63 @@
+import iapi.benchmark.SampleData;
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.merge_data.FileMerger;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OrderedIngestTest {
+
+    private static final int FILES = 12;
+    private static final int ROWS = 2500; // Three batches per file
+
+    private static List<Double> timestamps(Path file) throws Exception {
+        List<Double> timestamps = new ArrayList<>();
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(HadoopInputFile.fromPath(
+                new org.apache.hadoop.fs.Path(file.toString()), HadoopConfig.getHadoopConfiguration())).build()) {
+            GenericRecord record;
+            while ((record = reader.read()) != null) {
+                timestamps.add((Double) record.get("Timestamp"));
+            }
+        }
+        return timestamps;
+    }
+
+    @Test
+    public void testParallelFilesAreWrittenInFileOrder(@TempDir Path dir) throws Exception {
+        Path input = Files.createDirectories(dir.resolve("input"));
+        SampleData data = new SampleData(23);
+        for (int file = 1; file <= FILES; file++) {
+            // Written in reverse so the directory order does not happen to match; each file covers a later time span
+            int number = FILES + 1 - file;
+            data.writeCsv(input.resolve("dataset_part_" + number + ".csv"), ROWS, 1, 1.7e9 + number * 1000);
+        }
+
+        // A reorder buffer of two batches, so the workers of later files have to wait
+        ParquetWriterOptions options = new ParquetWriterOptions().withParserThreads(4).withQueueCapacity(2);
+        FileMerger merger = new FileMerger(input.toString(), dir.resolve("output/merged.parquet").toString(),
+                new PlainParquetConfiguration(), options);
+        merger.mergeFilesConcurrently();
+        merger.stop();
+
+        List<OutputManifest.Entry> outputs = new OutputManifest(dir.resolve("output")).read();
+        assertEquals(1, outputs.size());
+        List<Double> timestamps = timestamps(dir.resolve("output").resolve(outputs.get(0).path()));
+        assertEquals(FILES * ROWS, timestamps.size());
+        List<Double> sorted = new ArrayList<>(timestamps);
+        sorted.sort(null);
+        assertEquals(sorted, timestamps);
+    }
+}
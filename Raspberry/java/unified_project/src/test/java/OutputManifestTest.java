@@ -0,0 +1,128 @@
+
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.ParquetWriterPool;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.WriterMemoryManager;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutputManifestTest {
+    private static void write(Path file, RobotDataBatch batch, ParquetWriterOptions options) throws Exception {
+        try (RobotDataFileWriter writer = new RobotDataFileWriter(new NioOutputFile(file), new PlainParquetConfiguration(),
+                options, new WriterMemoryManager(options))) {
+            TestBatches.writeRows(writer, batch, true);
+        }
+    }
+
+    private static List<String> fileNames(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    public void testFilesArePublishedOnCloseAndListedInManifest(@TempDir Path dir) throws Exception {
+        ParquetWriterOptions options = new ParquetWriterOptions().withWriterCount(2);
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("merged.parquet").toString(),
+                new PlainParquetConfiguration(), options);
+        pool.writeBatch("a.csv", TestBatches.timestamps(10, 1700000000.0));
+        pool.writeBatch("b.csv", TestBatches.timestamps(20, 1700000100.0));
+        assertTrue(fileNames(dir).stream().noneMatch(name -> name.endsWith(".parquet")), fileNames(dir).toString());
+        pool.shutdown();
+
+        assertEquals(List.of(OutputManifest.FILE_NAME, "merged_w0_1.parquet", "merged_w1_1.parquet"), fileNames(dir));
+        List<OutputManifest.Entry> entries = pool.getManifest().read();
+        assertEquals(2, entries.size());
+        for (OutputManifest.Entry entry : entries) {
+            assertEquals(Files.size(dir.resolve(entry.path())), entry.bytes());
+            if (entry.rows() == 10) {
+                assertEquals(1700000000.0, entry.minTimestamp());
+                assertEquals(1700000009.0, entry.maxTimestamp());
+            } else {
+                assertEquals(20, entry.rows());
+                assertEquals(1700000100.0, entry.minTimestamp());
+                assertEquals(1700000119.0, entry.maxTimestamp());
+            }
+        }
+    }
+
+    @Test
+    public void testRecoverDeletesPartialFilesAndListsCompleteOnes(@TempDir Path dir) throws Exception {
+        Path complete = dir.resolve("complete.parquet");
+        write(complete, TestBatches.timestamps(5, 1700000000.0), new ParquetWriterOptions());
+        Path partial = OutputManifest.inProgressPath(dir.resolve("partial.parquet"));
+        Files.write(partial, new byte[]{'P', 'A', 'R', '1', 0, 0});
+
+        OutputManifest manifest = new OutputManifest(dir);
+        manifest.recover();
+        manifest.recover(); // Nothing left to do the second time
+
+        assertFalse(Files.exists(partial));
+        assertEquals(List.of(new OutputManifest.Entry("complete.parquet", 5, 1700000000.0, 1700000004.0, Files.size(complete), false)),
+                manifest.read());
+    }
+
+    @Test
+    public void testMicrosTimestampRangeIsInSeconds(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("micros.parquet");
+        write(file, TestBatches.timestamps(3, 1700000000.5), new ParquetWriterOptions().withTimestampMicros(true));
+
+        OutputManifest manifest = new OutputManifest(dir);
+        manifest.recover();
+        OutputManifest.Entry entry = manifest.read().get(0);
+        assertEquals(3, entry.rows());
+        assertEquals(1700000000.5, entry.minTimestamp(), 1e-6);
+        assertEquals(1700000002.5, entry.maxTimestamp(), 1e-6);
+    }
+
+    @Test
+    public void testSentFlagIsKeptAcrossRestarts(@TempDir Path dir) throws Exception {
+        // A manifest from before the sent column
+        Files.writeString(dir.resolve(OutputManifest.FILE_NAME), "path,rows,min_timestamp,max_timestamp,bytes\n"
+                + "a.parquet,5,1.0,5.0,100\n"
+                + "b.parquet,5,6.0,10.0,100\n");
+        OutputManifest manifest = new OutputManifest(dir);
+        assertTrue(manifest.read().stream().noneMatch(OutputManifest.Entry::sent));
+
+        manifest.markSent("a.parquet");
+        manifest.markSent("missing.parquet"); // Not listed; ignored
+
+        List<OutputManifest.Entry> entries = new OutputManifest(dir).read();
+        assertEquals(List.of("a.parquet", "b.parquet"), entries.stream().map(OutputManifest.Entry::path).toList());
+        assertEquals(List.of(true, false), entries.stream().map(OutputManifest.Entry::sent).toList());
+        assertEquals(100, entries.get(0).bytes());
+    }
+
+    @Test
+    public void testRecoverFoldsSentLinesAndDropsMissingFiles(@TempDir Path dir) throws Exception {
+        Path kept = dir.resolve("kept, with comma.parquet");
+        write(kept, TestBatches.timestamps(5, 1700000000.0), new ParquetWriterOptions());
+        Path gone = dir.resolve("gone.parquet");
+        write(gone, TestBatches.timestamps(5, 1700000005.0), new ParquetWriterOptions());
+        OutputManifest manifest = new OutputManifest(dir);
+        manifest.recover();
+        manifest.markSent("kept, with comma.parquet");
+        manifest.markSent("gone.parquet");
+        long appended = Files.size(dir.resolve(OutputManifest.FILE_NAME));
+
+        Files.delete(gone); // Removed after it was sent
+        manifest.recover();
+
+        assertEquals(List.of(new OutputManifest.Entry("kept, with comma.parquet", 5, 1700000000.0, 1700000004.0, Files.size(kept), true)),
+                manifest.read());
+        assertTrue(Files.size(dir.resolve(OutputManifest.FILE_NAME)) < appended);
+    }
+}
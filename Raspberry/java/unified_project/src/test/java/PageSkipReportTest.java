@@ -0,0 +1,114 @@
+
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.RobotDataLayout;
+import iapi.convert_data.WriterMemoryManager;
+import iapi.read_data.PageSkipReport;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PageSkipReportTest {
+
+    private static final int ROWS_PER_GROUP = 1000;
+    private static final double START = 1700000000.0;
+
+    private final Configuration conf = HadoopConfig.getHadoopConfiguration();
+
+    /**
+     * Three row groups of 20 Hz samples: 1000 distinct even IDs (too many for a dictionary, so the
+     * bloom filter is kept), then robot 3, then robot 7.
+     */
+    private Path writeSample(Path dir) throws Exception {
+        Path file = dir.resolve("sample.parquet");
+        ParquetWriterOptions options = new ParquetWriterOptions().withPageRowCountLimit(100);
+        int[][] idsPerGroup = {new int[ROWS_PER_GROUP], {3}, {7}};
+        for (int i = 0; i < ROWS_PER_GROUP; i++) {
+            idsPerGroup[0][i] = 2 * i;
+        }
+        RobotDataBatch batch = new RobotDataBatch(ROWS_PER_GROUP);
+        int row = 0;
+        try (RobotDataFileWriter writer = new RobotDataFileWriter(new NioOutputFile(file),
+                new PlainParquetConfiguration(), options, new WriterMemoryManager(options))) {
+            for (int[] ids : idsPerGroup) {
+                batch.clear();
+                for (int i = 0; i < ROWS_PER_GROUP; i++, row++) {
+                    batch.setInt(RobotDataLayout.position("ID"), i, ids[i % ids.length]);
+                    batch.setDouble(RobotDataLayout.position("Timestamp"), i, START + row * 0.05);
+                    batch.commitRow();
+                }
+                TestBatches.writeRows(writer, batch, true);
+                writer.flushRowGroup();
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void testBloomFiltersAreWrittenForConfiguredColumns(@TempDir Path dir) throws Exception {
+        Path file = writeSample(dir);
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(file.toString()), conf))) {
+            assertEquals(3, reader.getRowGroups().size());
+            for (ColumnChunkMetaData column : reader.getRowGroups().get(0).getColumns()) {
+                String name = column.getPath().toDotString();
+                BloomFilter bloomFilter = reader.readBloomFilter(column);
+                if (name.equals("ID")) {
+                    assertNotNull(bloomFilter);
+                    assertTrue(bloomFilter.findHash(bloomFilter.hash(4)));
+                    assertFalse(bloomFilter.findHash(bloomFilter.hash(3)));
+                } else if (!ParquetWriterOptions.DEFAULT_BLOOM_FILTER_COLUMNS.contains(name)) {
+                    assertNull(bloomFilter, name);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRobotLookupSkipsRowGroupsByStatisticsAndBloomFilter(@TempDir Path dir) throws Exception {
+        Path file = writeSample(dir);
+        PageSkipReport report = PageSkipReport.analyze(List.of(file), new PageSkipReport.Query(3, null, null, null, null), conf);
+
+        assertEquals(3, report.getRowGroups());
+        assertEquals(1, report.getRowGroupsSkippedByStatistics()); // Robot 7
+        assertEquals(1, report.getRowGroupsSkippedByBloomFilter()); // 3 is within 0..1998, but not in the filter
+    }
+
+    @Test
+    public void testTimeRangeQueryReadsFewPages(@TempDir Path dir) throws Exception {
+        Path file = writeSample(dir);
+        // Five seconds of robot 3, in the middle of the second row group
+        double from = START + (ROWS_PER_GROUP + 500) * 0.05;
+        PageSkipReport report = PageSkipReport.analyze(List.of(file),
+                new PageSkipReport.Query(3, from, from + 5.0, null, null), conf);
+
+        assertEquals(2, report.getRowGroupsSkippedByStatistics());
+        assertTrue(report.getPagesSkippedByPageIndex() > 0);
+        assertTrue(report.getBytesRead() * 10 < report.getBytes(), report.summary());
+    }
+
+    @Test
+    public void testNoPredicateReadsEverything(@TempDir Path dir) throws Exception {
+        Path file = writeSample(dir);
+        PageSkipReport report = PageSkipReport.analyze(List.of(file), PageSkipReport.Query.ALL, conf);
+
+        assertEquals(report.getPages(), report.getPagesRead());
+        assertEquals(report.getBytes(), report.getBytesRead());
+    }
+}
@@ -0,0 +1,160 @@
+
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetCompactor;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.ParquetWriterPool;
+import iapi.convert_data.RobotDataLayout;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.internal.column.columnindex.OffsetIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParquetCompactorTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final Configuration conf = HadoopConfig.getHadoopConfiguration();
+
+    /**
+     * Writes one small file of 100 rows per writer: merged_1.parquet for one writer, else merged_w0_1.parquet, merged_w1_1.parquet, ...
+     */
+    private static OutputManifest writeSmallFiles(Path dir, int files, ParquetWriterOptions options) throws Exception {
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("merged.parquet").toString(), new PlainParquetConfiguration(),
+                options.withWriterCount(files).withRouting(ParquetWriterOptions.Routing.ROUND_ROBIN));
+        for (int i = 0; i < files; i++) {
+            pool.writeBatch("chunk" + i + ".csv", TestBatches.timestamps(100, 1700000000.0 + i * 100));
+        }
+        pool.shutdown();
+        return pool.getManifest();
+    }
+
+    private List<Double> timestamps(Path file) throws Exception {
+        List<Double> timestamps = new ArrayList<>();
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(
+                HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(file.toString()), conf)).build()) {
+            for (GenericRecord record = reader.read(); record != null; record = reader.read()) {
+                timestamps.add((Double) record.get("Timestamp"));
+            }
+        }
+        return timestamps;
+    }
+
+    private static List<String> parquetFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".parquet")).sorted().toList();
+        }
+    }
+
+    @Test
+    public void testCompactionCopiesRowGroupsWithIndexes(@TempDir Path dir) throws Exception {
+        OutputManifest manifest = writeSmallFiles(dir, 3, new ParquetWriterOptions());
+        ParquetCompactor compactor = new ParquetCompactor(manifest, 64 * MB, 1024 * MB, 0);
+
+        List<OutputManifest.Entry> compacted = compactor.compact();
+
+        assertEquals(1, compacted.size());
+        assertEquals(List.of("compacted-1.parquet"), parquetFiles(dir));
+        assertEquals(List.of(new OutputManifest.Entry("compacted-1.parquet", 300, 1700000000.0, 1700000299.0,
+                Files.size(dir.resolve("compacted-1.parquet")), false)), manifest.read());
+        assertEquals(3, compactor.getFilesCompacted());
+
+        List<Double> timestamps = timestamps(dir.resolve("compacted-1.parquet"));
+        assertEquals(300, timestamps.size());
+        for (int row = 0; row < 300; row++) {
+            assertEquals(1700000000.0 + row, timestamps.get(row));
+        }
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(
+                new org.apache.hadoop.fs.Path(dir.resolve("compacted-1.parquet").toString()), conf))) {
+            assertEquals(3, reader.getRowGroups().size());
+            for (BlockMetaData rowGroup : reader.getRowGroups()) {
+                ColumnChunkMetaData timestamp = rowGroup.getColumns().get(RobotDataLayout.position("Timestamp"));
+                assertNotNull(reader.readColumnIndex(timestamp));
+                OffsetIndex offsetIndex = reader.readOffsetIndex(timestamp);
+                assertEquals(timestamp.getFirstDataPageOffset(), offsetIndex.getOffset(0)); // Moved with the chunk
+            }
+        }
+
+        assertEquals(List.of(), compactor.compact()); // A single small file is left alone
+    }
+
+    @Test
+    public void testRecoverFinishesInterruptedCompaction(@TempDir Path dir, @TempDir Path backup) throws Exception {
+        OutputManifest manifest = writeSmallFiles(dir, 2, new ParquetWriterOptions());
+        List<String> inputs = List.of("merged_w0_1.parquet", "merged_w1_1.parquet");
+        for (String name : inputs) {
+            Files.copy(dir.resolve(name), backup.resolve(name), StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        Files.copy(dir.resolve(OutputManifest.FILE_NAME), backup.resolve(OutputManifest.FILE_NAME));
+        new ParquetCompactor(manifest, 64 * MB, 1024 * MB, 0).compact();
+        FileTime compactedAt = Files.getLastModifiedTime(dir.resolve("compacted-1.parquet"));
+
+        // Crash after the rename, before the manifest update: the old manifest and the inputs are still there
+        Files.copy(backup.resolve(OutputManifest.FILE_NAME), dir.resolve(OutputManifest.FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+        for (String name : inputs) {
+            Files.copy(backup.resolve(name), dir.resolve(name), StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        manifest.recover();
+        assertEquals(List.of("compacted-1.parquet"), manifest.read().stream().map(OutputManifest.Entry::path).toList());
+        assertEquals(List.of("compacted-1.parquet"), parquetFiles(dir));
+
+        // Crash after the manifest update, before the inputs were deleted; a newer file reusing an input's name is kept
+        Files.copy(backup.resolve(inputs.get(0)), dir.resolve(inputs.get(0)), StandardCopyOption.COPY_ATTRIBUTES);
+        Files.copy(backup.resolve(inputs.get(1)), dir.resolve(inputs.get(1)));
+        Files.setLastModifiedTime(dir.resolve(inputs.get(1)), FileTime.fromMillis(compactedAt.toMillis() + 1000));
+        manifest.recover();
+        assertFalse(Files.exists(dir.resolve(inputs.get(0))));
+        assertEquals(List.of("compacted-1.parquet", inputs.get(1)),
+                manifest.read().stream().map(OutputManifest.Entry::path).sorted().toList());
+    }
+
+    @Test
+    public void testFilesWithDifferentSchemasAreNotMerged(@TempDir Path dir) throws Exception {
+        OutputManifest manifest = writeSmallFiles(dir, 1, new ParquetWriterOptions());
+        Files.move(dir.resolve("merged_1.parquet"), dir.resolve("double.parquet"));
+        Files.delete(dir.resolve(OutputManifest.FILE_NAME));
+        writeSmallFiles(dir, 1, new ParquetWriterOptions().withTimestampMicros(true));
+        manifest.recover();
+        assertEquals(2, manifest.read().size());
+
+        ParquetCompactor compactor = new ParquetCompactor(manifest, 64 * MB, 1024 * MB, 0);
+        assertEquals(List.of(), compactor.compact());
+        assertEquals(List.of("double.parquet", "merged_1.parquet"), parquetFiles(dir));
+        assertTrue(compactor.isSmall(manifest.read().get(0)));
+    }
+
+    @Test
+    public void testSentFilesAreNotCompacted(@TempDir Path dir) throws Exception {
+        OutputManifest manifest = writeSmallFiles(dir, 3, new ParquetWriterOptions());
+        manifest.markSent("merged_w1_1.parquet");
+
+        List<OutputManifest.Entry> compacted = new ParquetCompactor(manifest, 64 * MB, 1024 * MB, 0).compact();
+
+        assertEquals(1, compacted.size());
+        assertEquals(200, compacted.get(0).rows()); // merged_w0_1 and merged_w2_1
+        assertEquals(List.of("compacted-1.parquet", "merged_w1_1.parquet"), parquetFiles(dir));
+        assertEquals(List.of("merged_w1_1.parquet"), manifest.read().stream()
+                .filter(OutputManifest.Entry::sent).map(OutputManifest.Entry::path).toList());
+    }
+}
@@ -0,0 +1,217 @@
+
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.OutputManifest;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.ParquetWriterPool;
+import iapi.convert_data.ParquetWriterUtil;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataLayout;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParquetWriterPoolTest {
+
+    private static RobotDataBatch batchWithIds(int... ids) {
+        RobotDataBatch batch = new RobotDataBatch(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            addRow(batch, ids[i], 1700000000.0 + i);
+        }
+        return batch;
+    }
+
+    private static void addRow(RobotDataBatch batch, int id, double timestamp) {
+        batch.setInt(RobotDataLayout.position("ID"), batch.size(), id);
+        batch.setDouble(RobotDataLayout.position("Timestamp"), batch.size(), timestamp);
+        batch.commitRow();
+    }
+
+    @Test
+    public void testRobotIdRoutingSplitsMixedBatches(@TempDir Path dir) throws Exception {
+        ParquetWriterOptions options = new ParquetWriterOptions()
+                .withWriterCount(2)
+                .withRouting(ParquetWriterOptions.Routing.ROBOT_ID);
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("merged.parquet").toString(),
+                new PlainParquetConfiguration(), options);
+
+        pool.writeBatch("a.csv", batchWithIds(1, 2, 3, 4, 5));
+        pool.writeBatch("b.csv", batchWithIds(7, 9));
+        pool.shutdown();
+
+        assertEquals(2, pool.getWriters().get(0).getRowsWritten()); // 2, 4
+        assertEquals(5, pool.getWriters().get(1).getRowsWritten()); // 1, 3, 5, 7, 9
+        assertTrue(Files.size(dir.resolve("merged_w0_1.parquet")) > 0);
+        assertTrue(Files.size(dir.resolve("merged_w1_1.parquet")) > 0);
+    }
+
+    @Test
+    public void testPartitionedOutputClosesLeastRecentlyUsedPartition(@TempDir Path dir) throws Exception {
+        ParquetWriterOptions options = new ParquetWriterOptions()
+                .withPartitioning(true)
+                .withMaxOpenPartitions(1);
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.toString(), new PlainParquetConfiguration(), options);
+
+        RobotDataBatch batch = new RobotDataBatch(4);
+        addRow(batch, 1, 1699999199.5); // 2023-11-14 21:59:59.5 UTC
+        addRow(batch, 1, 1699999200.0); // 2023-11-14 22:00:00 UTC
+        addRow(batch, 2, 1699999200.0);
+        addRow(batch, 1, 1699999201.0); // Reopens id=1 hour 22 after it was closed
+        pool.writeBatch("a.csv", batch);
+        pool.shutdown();
+
+        assertTrue(Files.exists(dir.resolve("id=1/date=2023-11-14/hour=21/part-1.parquet")));
+        assertTrue(Files.exists(dir.resolve("id=1/date=2023-11-14/hour=22/part-1.parquet")));
+        assertTrue(Files.exists(dir.resolve("id=1/date=2023-11-14/hour=22/part-2.parquet")));
+        assertTrue(Files.exists(dir.resolve("id=2/date=2023-11-14/hour=22/part-1.parquet")));
+        assertEquals(3, pool.getWriters().get(0).getPartitionsClosed());
+    }
+
+    /**
+     * Waits until the thread is in the state, e.g. parked in a blocking call.
+     */
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != state) {
+            assertTrue(System.nanoTime() < deadline, thread.getName() + " is " + thread.getState() + ", expected " + state);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testShutdownWritesEverythingStillQueued(@TempDir Path dir) throws Exception {
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("merged.parquet").toString(),
+                new PlainParquetConfiguration(), new ParquetWriterOptions());
+        ParquetWriterUtil writer = pool.getWriters().get(0);
+        Thread closer = new Thread(pool::shutdown, "closer");
+        synchronized (writer) { // Holding the writer's lock stops it before it writes anything
+            for (int i = 0; i < 10; i++) {
+                pool.writeBatch("a.csv", TestBatches.timestamps(100, 1700000000.0 + i * 100));
+            }
+            closer.start();
+            awaitState(closer, Thread.State.WAITING); // Shut down, waiting for the writer
+            assertTrue(writer.getQueueDepth() >= 9, writer.queueSummary());
+        }
+        closer.join();
+
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(1000, writer.getRowsWritten());
+        assertEquals(List.of(1000L), pool.getManifest().read().stream().map(OutputManifest.Entry::rows).toList());
+    }
+
+    @Test
+    public void testFailedBatchPublishesNothingAndFailsLaterWrites(@TempDir Path dir) throws Exception {
+        Files.createFile(dir.resolve("id=1")); // In the way of the id=1 partition directory
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.toString(), new PlainParquetConfiguration(),
+                new ParquetWriterOptions().withPartitioning(true));
+        ParquetWriterUtil writer = pool.getWriters().get(0);
+        List<String> committed = new ArrayList<>();
+        pool.onSourceCommitted(committed::add);
+
+        RobotDataBatch batch = new RobotDataBatch(2);
+        addRow(batch, 2, 1699999200.0); // Written to id=2 before id=1 fails
+        addRow(batch, 1, 1699999200.0);
+        synchronized (writer) { // Both batches are taken in one drain
+            pool.writeBatch("a.csv", batch);
+            pool.writeBatch("b.csv", batchWithIds(2));
+        }
+        pool.finishSource("a.csv");
+        pool.finishSource("b.csv");
+        pool.shutdown();
+
+        IOException e = assertThrows(IOException.class, () -> pool.writeBatch("c.csv", batchWithIds(2)));
+        assertNotNull(e.getCause());
+        assertEquals(List.of(), committed);
+        assertEquals(List.of(), pool.getManifest().read());
+        assertFalse(Files.exists(dir.resolve("id=2/date=2023-11-14/hour=22/part-1.parquet")));
+    }
+
+    @Test
+    public void testProducerBlocksWhileQueueIsFullAndResumes(@TempDir Path dir) throws Exception {
+        ParquetWriterOptions options = new ParquetWriterOptions().withQueueCapacity(2);
+        ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("merged.parquet").toString(),
+                new PlainParquetConfiguration(), options);
+        ParquetWriterUtil writer = pool.getWriters().get(0);
+        AtomicInteger queued = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 6; i++) {
+                    pool.writeBatch("a.csv", TestBatches.timestamps(100, 1700000000.0 + i * 100));
+                    queued.incrementAndGet();
+                }
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        }, "producer");
+        synchronized (writer) { // The writer takes at most one batch, then waits for the lock
+            producer.start();
+            awaitState(producer, Thread.State.TIMED_WAITING); // Waiting for room in the queue
+            assertEquals(2, writer.getQueueDepth());
+            assertTrue(queued.get() <= 3, queued + " batches queued");
+        }
+        producer.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(producer.isAlive(), "Producer did not resume");
+        pool.shutdown();
+
+        assertNull(failure.get());
+        assertEquals(6, queued.get());
+        assertTrue(writer.getBlockedOffers() >= 1, writer.queueSummary());
+        assertEquals(600, writer.getRowsWritten());
+    }
+
+    @Test
+    public void testFilesRotateAtTargetSizeAndNumberOn(@TempDir Path dir) throws Exception {
+        long target = 256 * 1024;
+        ParquetWriterOptions options = new ParquetWriterOptions().withTargetFileSize(target);
+        String output = dir.resolve("merged.parquet").toString();
+        ParquetWriterPool pool = ParquetWriterPool.start(output, new PlainParquetConfiguration(), options);
+        for (int i = 0; i < 5; i++) {
+            pool.writeBatch("a.csv", TestBatches.random(1000, i)); // Random, so about 520 bytes per row
+        }
+        pool.shutdown();
+
+        List<OutputManifest.Entry> files = pool.getManifest().read();
+        assertTrue(files.size() > 2, files.toString());
+        Configuration conf = HadoopConfig.getHadoopConfiguration();
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals("merged_" + (i + 1) + ".parquet", files.get(i).path());
+            String path = dir.resolve(files.get(i).path()).toString();
+            try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(path), conf))) {
+                long dataSize = reader.getRowGroups().stream().mapToLong(BlockMetaData::getCompressedSize).sum();
+                if (i < files.size() - 1) {
+                    // Rotated on the buffered size, which is a little above the encoded size
+                    assertTrue(dataSize > target * 0.95 && dataSize < target * 1.01, path + ": " + dataSize);
+                } else {
+                    assertTrue(dataSize < target, path + ": " + dataSize);
+                }
+            }
+        }
+        assertEquals(5000, files.stream().mapToLong(OutputManifest.Entry::rows).sum());
+
+        // A new pool continues the series after the files that exist
+        pool = ParquetWriterPool.start(output, new PlainParquetConfiguration(), options);
+        pool.writeBatch("b.csv", TestBatches.random(10, 5));
+        pool.shutdown();
+        assertEquals("merged_" + (files.size() + 1) + ".parquet", pool.getManifest().read().get(files.size()).path());
+    }
+}
@@ -0,0 +1,91 @@
+import iapi.benchmark.SampleData;
+import iapi.convert_data.CSVDataCleaner;
+import iapi.convert_data.CSVTokenizer;
+import iapi.convert_data.ColumnBinding;
+import iapi.convert_data.RobotDataBatch;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RobotDataBatchTest {
+
+    private static String csv(List<String> rows) {
+        return "\"" + String.join("\",\"", SampleData.HEADER) + "\"\n" + String.join("\n", rows) + "\n";
+    }
+
+    private static CSVTokenizer tokenizer(String text) throws Exception {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return new CSVTokenizer(Channels.newChannel(new ByteArrayInputStream(bytes)), 1024);
+    }
+
+    @Test
+    public void testInvalidRowIsNotCommitted() throws Exception {
+        SampleData sample = new SampleData(9);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(sample.row(2, 1700000000.0 + i));
+        }
+        rows.set(2, rows.get(2).replaceFirst("\\[[^]]*]", "[1.0, oops]"));
+        String text = csv(rows);
+
+        // The same rows read with commons-csv, skipping the one that does not parse
+        List<String> expected = new ArrayList<>();
+        CSVFormat format = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).setTrim(true).build();
+        for (CSVRecord record : format.parse(new StringReader(text))) {
+            try {
+                expected.add(CSVDataCleaner.cleanRecord(record).toString());
+            } catch (IllegalArgumentException e) {
+                // Same row is rejected below
+            }
+        }
+
+        RobotDataBatch batch = new RobotDataBatch(4);
+        try (CSVTokenizer tokenizer = tokenizer(text)) {
+            ColumnBinding binding = ColumnBinding.forHeader(tokenizer.header());
+            while (tokenizer.nextRow()) {
+                try {
+                    CSVDataCleaner.cleanRecord(tokenizer, binding, batch);
+                } catch (IllegalArgumentException e) {
+                    // Skipped
+                }
+            }
+        }
+
+        assertEquals(4, batch.size());
+        assertTrue(batch.isFull());
+        RobotDataBatch.Cursor cursor = batch.cursor();
+        for (int row = 0; row < batch.size(); row++) {
+            assertEquals(expected.get(row), cursor.moveTo(row).asRecord().toString());
+        }
+        assertEquals(1700000000.0 + 4, batch.doubleColumn(1)[3]);
+        assertThrows(IllegalStateException.class, batch::commitRow);
+        assertThrows(IndexOutOfBoundsException.class, () -> cursor.moveTo(4));
+    }
+
+    @Test
+    public void testRejectsVectorOfWrongWidth() throws Exception {
+        SampleData sample = new SampleData(5);
+        String row = sample.row(1, 1700000000.0).replaceFirst("\\[[^]]*]", "[1.0, 2.0]");
+
+        RobotDataBatch batch = new RobotDataBatch(4);
+        try (CSVTokenizer tokenizer = tokenizer(csv(List.of(row)))) {
+            ColumnBinding binding = ColumnBinding.forHeader(tokenizer.header());
+            assertTrue(tokenizer.nextRow());
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> CSVDataCleaner.cleanRecord(tokenizer, binding, batch));
+            assertTrue(e.getMessage().contains("ActualJointPositions"), e.getMessage());
+        }
+        assertEquals(0, batch.size());
+    }
+}
@@ -0,0 +1,54 @@
+
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.WriterMemoryManager;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RobotDataWriteSupportTest {
+
+    private static final int ROWS = 5000;
+
+    private static void write(Path file, RobotDataBatch batch, ParquetConfiguration conf, ParquetWriterOptions options,
+                              boolean avroPath) throws Exception {
+        try (RobotDataFileWriter writer = new RobotDataFileWriter(new NioOutputFile(file), conf, options,
+                new WriterMemoryManager(options))) {
+            TestBatches.writeRows(writer, batch, avroPath);
+        }
+    }
+
+    private static void assertSameFile(Path dir, String name, ParquetConfiguration conf, ParquetWriterOptions options) throws Exception {
+        RobotDataBatch batch = TestBatches.random(ROWS, 19);
+        Path avro = dir.resolve(name + "-avro.parquet");
+        Path direct = dir.resolve(name + "-direct.parquet");
+        write(avro, batch, conf, options, true);
+        write(direct, batch, conf, options, false);
+        assertEquals(-1L, Files.mismatch(avro, direct), name);
+    }
+
+    @Test
+    public void testDirectWriteMatchesAvroOutput(@TempDir Path dir) throws Exception {
+        assertSameFile(dir, "double", new PlainParquetConfiguration(), new ParquetWriterOptions().withPageRowCountLimit(700));
+    }
+
+    @Test
+    public void testDirectWriteMatchesAvroOutputWithMicros(@TempDir Path dir) throws Exception {
+        assertSameFile(dir, "micros", new PlainParquetConfiguration(), new ParquetWriterOptions().withTimestampMicros(true));
+    }
+
+    @Test
+    public void testDirectWriteMatchesAvroOutputWithThreeLevelLists(@TempDir Path dir) throws Exception {
+        PlainParquetConfiguration conf = new PlainParquetConfiguration();
+        conf.set("parquet.avro.write-old-list-structure", "false");
+        assertSameFile(dir, "lists", conf, new ParquetWriterOptions());
+    }
+}
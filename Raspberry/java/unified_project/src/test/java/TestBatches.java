@@ -0,0 +1,97 @@
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.RobotDataLayout;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Batches and writer helpers shared by the tests.
+ */
+final class TestBatches {
+
+    private static final int ID = RobotDataLayout.position("ID");
+    private static final int TIMESTAMP = RobotDataLayout.position("Timestamp");
+
+    private TestBatches() {
+    }
+
+    /**
+     * Random values, so the data does not compress, and the row index as Timestamp to check the order.
+     */
+    static RobotDataBatch random(int rows, long seed) {
+        Random random = new Random(seed);
+        RobotDataBatch batch = new RobotDataBatch(rows);
+        for (int row = 0; row < rows; row++) {
+            for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+                switch (RobotDataLayout.type(pos)) {
+                    case INT -> batch.setInt(pos, row, random.nextInt(4));
+                    case DOUBLE -> batch.setDouble(pos, row, random.nextDouble());
+                    default -> {
+                        double[] vector = batch.vectorColumn(pos);
+                        for (int i = 0; i < RobotDataLayout.width(pos); i++) {
+                            vector[batch.vectorOffset(pos, row) + i] = random.nextDouble();
+                        }
+                    }
+                }
+            }
+            batch.setDouble(TIMESTAMP, row, row);
+            batch.commitRow();
+        }
+        return batch;
+    }
+
+    /**
+     * Values derived from the row number {@code firstRow + row}, so they can be checked after a round trip:
+     * ints are the number modulo 5, doubles the number plus the field position / 100, vector elements the
+     * number * 10 plus the index, and the Timestamp is four rows per second from 1699999200.
+     */
+    static RobotDataBatch sequential(int firstRow, int rows) {
+        RobotDataBatch batch = new RobotDataBatch(rows);
+        for (int row = 0; row < rows; row++) {
+            int value = firstRow + row;
+            for (int pos = 0; pos < RobotDataLayout.FIELD_COUNT; pos++) {
+                switch (RobotDataLayout.type(pos)) {
+                    case INT -> batch.setInt(pos, row, value % 5);
+                    case DOUBLE -> batch.setDouble(pos, row, value + pos / 100.0);
+                    default -> {
+                        double[] vector = batch.vectorColumn(pos);
+                        for (int i = 0; i < RobotDataLayout.width(pos); i++) {
+                            vector[batch.vectorOffset(pos, row) + i] = value * 10 + i;
+                        }
+                    }
+                }
+            }
+            batch.setDouble(TIMESTAMP, row, 1699999200.0 + value / 4.0);
+            batch.commitRow();
+        }
+        return batch;
+    }
+
+    /**
+     * Rows with only ID (row % 3) and Timestamp (one second apart) set.
+     */
+    static RobotDataBatch timestamps(int rows, double firstTimestamp) {
+        RobotDataBatch batch = new RobotDataBatch(rows);
+        for (int row = 0; row < rows; row++) {
+            batch.setInt(ID, row, row % 3);
+            batch.setDouble(TIMESTAMP, row, firstTimestamp + row);
+            batch.commitRow();
+        }
+        return batch;
+    }
+
+    /**
+     * Writes every row of the batch, through the Avro view or straight to the column writers.
+     */
+    static void writeRows(RobotDataFileWriter writer, RobotDataBatch batch, boolean avroPath) throws IOException {
+        RobotDataBatch.Cursor cursor = batch.cursor();
+        for (int row = 0; row < batch.size(); row++) {
+            if (avroPath) {
+                writer.write(cursor.moveTo(row).asRecord());
+            } else {
+                writer.write(cursor.moveTo(row));
+            }
+        }
+    }
+}
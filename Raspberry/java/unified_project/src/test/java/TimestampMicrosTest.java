@@ -0,0 +1,112 @@
+
+import iapi.benchmark.SampleData;
+import iapi.convert_data.CSVDataCleaner;
+import iapi.convert_data.CSVTokenizer;
+import iapi.convert_data.ColumnBinding;
+import iapi.convert_data.FastDoubleParser;
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.RobotDataLayout;
+import iapi.convert_data.WriterMemoryManager;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.column.Encoding;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.PrimitiveType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimestampMicrosTest {
+
+    private final Configuration conf = HadoopConfig.getHadoopConfiguration();
+
+    @Test
+    public void testConversionIsLosslessForMicrosecondTimestamps() {
+        Random random = new Random(14);
+        for (int i = 0; i < 100_000; i++) {
+            long micros = 1_600_000_000_000_000L + (long) (random.nextDouble() * 200_000_000_000_000L);
+            byte[] text = BigDecimal.valueOf(micros, 6).toPlainString().getBytes(StandardCharsets.US_ASCII);
+            double seconds = FastDoubleParser.parse(text, 0, text.length);
+            assertEquals(micros, CSVDataCleaner.toEpochMicros(seconds));
+            assertEquals(seconds, micros / 1e6);
+        }
+    }
+
+    @Test
+    public void testSubMicrosecondTimestampIsRejected() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> CSVDataCleaner.toEpochMicros(1700000000.0000004));
+
+        SampleData sample = new SampleData(3);
+        String text = "\"" + String.join("\",\"", SampleData.HEADER) + "\"\n"
+                + sample.row(1, 1700000000.05) + "\n"
+                + sample.row(1, 1700000000.0000004) + "\n";
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        RobotDataBatch batch = new RobotDataBatch();
+        try (CSVTokenizer tokenizer = new CSVTokenizer(Channels.newChannel(new ByteArrayInputStream(bytes)), 1024)) {
+            ColumnBinding binding = ColumnBinding.forHeader(tokenizer.header());
+            tokenizer.nextRow();
+            CSVDataCleaner.cleanRecord(tokenizer, binding, batch, true);
+            tokenizer.nextRow();
+            assertThrows(IllegalArgumentException.class, () -> CSVDataCleaner.cleanRecord(tokenizer, binding, batch, true));
+        }
+        assertEquals(1, batch.size());
+    }
+
+    @Test
+    public void testTimestampIsWrittenAsDeltaEncodedMicros(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("micros.parquet");
+        ParquetWriterOptions options = new ParquetWriterOptions().withTimestampMicros(true);
+        RobotDataBatch batch = new RobotDataBatch(500);
+        List<Long> expected = new ArrayList<>();
+        for (int row = 0; row < batch.capacity(); row++) {
+            double timestamp = 1700000000.0 + row * 0.05;
+            batch.setDouble(RobotDataLayout.position("Timestamp"), row, timestamp);
+            batch.commitRow();
+            expected.add(CSVDataCleaner.toEpochMicros(timestamp));
+        }
+        try (RobotDataFileWriter writer = new RobotDataFileWriter(new NioOutputFile(file),
+                new PlainParquetConfiguration(), options, new WriterMemoryManager(options))) {
+            TestBatches.writeRows(writer, batch, true);
+        }
+
+        org.apache.hadoop.fs.Path path = new org.apache.hadoop.fs.Path(file.toString());
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(path, conf))) {
+            PrimitiveType type = reader.getFileMetaData().getSchema().getType("Timestamp").asPrimitiveType();
+            assertEquals(PrimitiveType.PrimitiveTypeName.INT64, type.getPrimitiveTypeName());
+            assertEquals(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MICROS),
+                    type.getLogicalTypeAnnotation());
+            ColumnChunkMetaData column = reader.getRowGroups().get(0).getColumns().get(RobotDataLayout.position("Timestamp"));
+            assertTrue(column.getEncodings().contains(Encoding.DELTA_BINARY_PACKED), column.getEncodings().toString());
+        }
+
+        List<Long> actual = new ArrayList<>();
+        try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(HadoopInputFile.fromPath(path, conf)).build()) {
+            for (GenericRecord record = reader.read(); record != null; record = reader.read()) {
+                actual.add(((Number) record.get("Timestamp")).longValue());
+            }
+        }
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,99 @@
+
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.WriterMemoryManager;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriterMemoryManagerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final Configuration conf = HadoopConfig.getHadoopConfiguration();
+
+    private RobotDataFileWriter open(Path file, WriterMemoryManager memoryManager) throws Exception {
+        return new RobotDataFileWriter(new NioOutputFile(file), new PlainParquetConfiguration(),
+                new ParquetWriterOptions(), memoryManager);
+    }
+
+    @Test
+    public void testRowGroupSizeIsSharedByOpenFiles(@TempDir Path dir) throws Exception {
+        WriterMemoryManager memoryManager = new WriterMemoryManager(64 * MB, 128 * MB);
+        assertEquals(64 * MB, memoryManager.getRowGroupSize());
+
+        RobotDataFileWriter[] writers = new RobotDataFileWriter[4];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = open(dir.resolve("part-" + i + ".parquet"), memoryManager);
+        }
+        assertEquals(16 * MB, memoryManager.getRowGroupSize());
+
+        writers[0].close();
+        writers[1].close();
+        assertEquals(32 * MB, memoryManager.getRowGroupSize());
+
+        writers[2].close();
+        writers[3].close();
+        assertEquals(0, memoryManager.getOpenFiles());
+    }
+
+    @Test
+    public void testFlushRowGroupStartsNewRowGroup(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("flush.parquet");
+        RobotDataBatch batch = TestBatches.random(20, 1);
+        RobotDataBatch.Cursor cursor = batch.cursor();
+        try (RobotDataFileWriter writer = open(file, new WriterMemoryManager(64 * MB, 128 * MB))) {
+            for (int row = 0; row < batch.size(); row++) {
+                writer.write(cursor.moveTo(row).asRecord());
+                if (row == 9) {
+                    writer.flushRowGroup();
+                }
+            }
+        }
+
+        try (ParquetFileReader reader = ParquetFileReader.open(HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(file.toString()), conf))) {
+            List<BlockMetaData> rowGroups = reader.getFooter().getBlocks();
+            assertEquals(2, rowGroups.size());
+            assertEquals(10, rowGroups.get(0).getRowCount());
+            assertEquals(10, rowGroups.get(1).getRowCount());
+        }
+    }
+
+    @Test
+    public void testFlushesEarlyWhenBudgetIsReached(@TempDir Path dir) throws Exception {
+        // Three files on a 2 MB budget get the 1 MB minimum row group, so together they can outgrow the budget
+        WriterMemoryManager memoryManager = new WriterMemoryManager(2 * MB, 128 * MB);
+        RobotDataBatch batch = TestBatches.random(1000, 2);
+        RobotDataBatch.Cursor cursor = batch.cursor();
+        RobotDataFileWriter[] writers = new RobotDataFileWriter[3];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = open(dir.resolve("part-" + i + ".parquet"), memoryManager);
+        }
+        for (int pass = 0; pass < 20 && memoryManager.getEarlyFlushes() == 0; pass++) {
+            for (int row = 0; row < batch.size(); row++) {
+                for (RobotDataFileWriter writer : writers) {
+                    writer.write(cursor.moveTo(row).asRecord());
+                }
+            }
+        }
+        assertTrue(memoryManager.getEarlyFlushes() > 0);
+
+        for (RobotDataFileWriter writer : writers) {
+            writer.close();
+        }
+        assertEquals(0, memoryManager.getBufferedBytes());
+    }
+}
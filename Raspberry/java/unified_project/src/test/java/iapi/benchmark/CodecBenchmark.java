@@ -0,0 +1,231 @@
+package iapi.benchmark;
+
+import iapi.convert_data.CSVDataCleaner;
+import iapi.convert_data.CSVTokenizer;
+import iapi.convert_data.ColumnBinding;
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.ParquetProfile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.ParquetWriterPool;
+import iapi.convert_data.RobotDataBatch;
+import iapi.read_data.PageSkipReport;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Writes the same sample of robot data under every {@link ParquetProfile} and reports bytes per row,
+ * writer CPU time and peak heap use. The sample is read from the CSV files in the input folder, or
+ * generated with {@link SampleData} if the folder has none.
+ *
+ * With --timestamps it instead compares Timestamp stored as double seconds against delta-encoded
+ * int64 microseconds, for a few of the profiles, reporting the Timestamp column on its own as well.
+ *
+ * Run from the test classes (see the package documentation) with: iapi.benchmark.CodecBenchmark
+ * [--input=folder] [--rows=N] [--timestamps].
+ */
+public class CodecBenchmark {
+
+    private static final ParquetProfile[] TIMESTAMP_PROFILES = {
+            ParquetProfile.UNCOMPRESSED, ParquetProfile.SNAPPY, ParquetProfile.ZSTD_3, ParquetProfile.ZSTD_3_BSS};
+
+    public static void main(String[] args) throws IOException {
+        String input = null;
+        int rows = 100_000;
+        boolean timestamps = false;
+        for (String arg : args) {
+            if (arg.startsWith("--input=")) {
+                input = arg.substring("--input=".length());
+            } else if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(arg.substring("--rows=".length()));
+            } else if (arg.equals("--timestamps")) {
+                timestamps = true;
+            }
+        }
+        if (timestamps) {
+            runTimestamps(input, rows);
+        } else {
+            run(input, rows);
+        }
+    }
+
+    public static void run(String inputFolder, int rows) throws IOException {
+        List<RobotDataBatch> sample = loadSample(inputFolder, rows, false);
+        long sampleRows = sample.stream().mapToLong(RobotDataBatch::size).sum();
+        ParquetConfiguration conf = new PlainParquetConfiguration();
+        Path outputRoot = Files.createTempDirectory("codec-benchmark");
+
+        System.out.printf("Writing %d rows under %d profiles to %s%n", sampleRows, ParquetProfile.values().length, outputRoot);
+
+        List<String> results = new ArrayList<>(); // Printed at the end, clear of the writers' log output
+        long baseline = -1;
+        for (ParquetProfile profile : ParquetProfile.values()) {
+            Path dir = outputRoot.resolve(profile.name().toLowerCase());
+            resetPeakHeap();
+            ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("sample.parquet").toString(), conf,
+                    new ParquetWriterOptions().withProfile(profile));
+            for (RobotDataBatch batch : sample) {
+                pool.writeBatch("sample", batch); // Batches are only read by the writer, so they can be shared across runs
+            }
+            pool.shutdown();
+            long peakHeap = peakHeap();
+
+            long bytes = directorySize(dir);
+            if (baseline < 0) {
+                baseline = bytes;
+            }
+            long cpuNanos = pool.getWriters().get(0).getCpuNanos();
+            results.add(String.format("%-14s %12d %10.1f %8.3f %12.1f %14.1f", profile, bytes, (double) bytes / sampleRows,
+                    (double) bytes / baseline, cpuNanos / 1e6, peakHeap / (1024.0 * 1024.0)));
+        }
+
+        System.out.printf("%n%-14s %12s %10s %8s %12s %14s%n", "Profile", "bytes", "bytes/row", "ratio", "cpu ms", "peak heap MB");
+        results.forEach(System.out::println);
+    }
+
+    /**
+     * Writes the sample with Timestamp as double seconds and as int64 microseconds under a few
+     * profiles. Rows whose timestamps have sub-microsecond digits are left out of the sample, so
+     * both variants hold the same rows.
+     */
+    public static void runTimestamps(String inputFolder, int rows) throws IOException {
+        List<RobotDataBatch> sample = loadSample(inputFolder, rows, true);
+        long sampleRows = sample.stream().mapToLong(RobotDataBatch::size).sum();
+        ParquetConfiguration conf = new PlainParquetConfiguration();
+        Configuration readConf = HadoopConfig.getHadoopConfiguration();
+        Path outputRoot = Files.createTempDirectory("timestamp-benchmark");
+
+        System.out.printf("Writing %d rows with double and micros timestamps to %s%n", sampleRows, outputRoot);
+
+        List<String> results = new ArrayList<>();
+        for (ParquetProfile profile : TIMESTAMP_PROFILES) {
+            long doubleBytes = 0;
+            for (boolean micros : new boolean[]{false, true}) {
+                Path dir = outputRoot.resolve(profile.name().toLowerCase() + (micros ? "-micros" : "-double"));
+                ParquetWriterPool pool = ParquetWriterPool.start(dir.resolve("sample.parquet").toString(), conf,
+                        new ParquetWriterOptions().withProfile(profile).withTimestampMicros(micros));
+                for (RobotDataBatch batch : sample) {
+                    pool.writeBatch("sample", batch);
+                }
+                pool.shutdown();
+
+                long bytes = directorySize(dir);
+                if (!micros) {
+                    doubleBytes = bytes;
+                }
+                long timestampBytes = timestampColumnBytes(dir, readConf);
+                long cpuNanos = pool.getWriters().get(0).getCpuNanos();
+                results.add(String.format("%-14s %-7s %12d %8.3f %16d %12.2f %12.1f", profile, micros ? "micros" : "double",
+                        bytes, (double) bytes / doubleBytes, timestampBytes, (double) timestampBytes / sampleRows, cpuNanos / 1e6));
+            }
+        }
+
+        System.out.printf("%n%-14s %-7s %12s %8s %16s %12s %12s%n", "Profile", "Time", "bytes", "ratio",
+                "timestamp bytes", "ts bytes/row", "cpu ms");
+        results.forEach(System.out::println);
+    }
+
+    private static long timestampColumnBytes(Path dir, Configuration conf) throws IOException {
+        long bytes = 0;
+        for (Path file : PageSkipReport.parquetFiles(dir)) {
+            try (ParquetFileReader reader = ParquetFileReader.open(
+                    HadoopInputFile.fromPath(new org.apache.hadoop.fs.Path(file.toAbsolutePath().toString()), conf))) {
+                for (BlockMetaData block : reader.getRowGroups()) {
+                    for (ColumnChunkMetaData column : block.getColumns()) {
+                        if (column.getPath().toDotString().equals("Timestamp")) {
+                            bytes += column.getTotalSize();
+                        }
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    static List<RobotDataBatch> loadSample(String inputFolder, int rows, boolean timestampMicros) throws IOException {
+        File[] files = inputFolder == null ? null : new File(inputFolder).listFiles((dir, name) -> name.endsWith(".csv"));
+        Path generated = null;
+        if (files == null || files.length == 0) {
+            System.out.println("No CSV files in the input folder; generating sample data.");
+            generated = Files.createTempFile("codec-benchmark", ".csv");
+            new SampleData(42).writeCsv(generated, rows, 1, 1700000000.0);
+            files = new File[]{generated.toFile()};
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+
+        List<RobotDataBatch> batches = new ArrayList<>();
+        RobotDataBatch batch = new RobotDataBatch();
+        int loaded = 0;
+        for (File file : files) {
+            try (CSVTokenizer tokenizer = new CSVTokenizer(file.toPath())) {
+                ColumnBinding binding = ColumnBinding.forHeader(tokenizer.header());
+                while (loaded < rows && tokenizer.nextRow()) {
+                    try {
+                        CSVDataCleaner.cleanRecord(tokenizer, binding, batch, timestampMicros);
+                        loaded++;
+                    } catch (IllegalArgumentException e) {
+                        // Invalid rows are skipped, as in FileMerger
+                    }
+                    if (batch.isFull()) {
+                        batches.add(batch);
+                        batch = new RobotDataBatch();
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.printf("Skipping %s: %s%n", file.getName(), e.getMessage());
+            }
+            if (loaded >= rows) {
+                break;
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        if (generated != null) {
+            Files.delete(generated);
+        }
+        return batches;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package iapi.benchmark;
+
+import iapi.merge_data.InputIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares finding the input files to process in folders of 10k, 100k and 1M empty CSV files:
+ * listing the folder into an array and sorting it with the regex-based comparator FileMerger used
+ * before, against an {@link InputIndex} on its first scan, on a rescan that finds nothing new, and
+ * on a rescan that finds 100 new files. Files are created in random order, so the directory order
+ * is not the numeric order. Reports the best of three runs and the heap allocated.
+ *
+ * Run from the test classes (see the package documentation) with: iapi.benchmark.DirectoryIndexBenchmark
+ * [--files=10000,100000] [--dir=folder].
+ */
+public class DirectoryIndexBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int ROUNDS = 3;
+    private static final int NEW_FILES = 100;
+
+    public static void main(String[] args) throws IOException {
+        int[] counts = {10_000, 100_000, 1_000_000};
+        Path parent = null;
+        for (String arg : args) {
+            if (arg.startsWith("--files=")) {
+                counts = Arrays.stream(arg.substring("--files=".length()).split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--dir=")) {
+                parent = Path.of(arg.substring("--dir=".length()));
+            }
+        }
+        run(counts, parent);
+    }
+
+    /**
+     * @param parent Folder to create the test folders in, or null for the temporary folder.
+     */
+    public static void run(int[] counts, Path parent) throws IOException {
+        System.out.printf("%9s %-26s %10s %12s%n", "Files", "Scan", "ms", "MB allocated");
+        for (int count : counts) {
+            Path dir = parent == null ? Files.createTempDirectory("directory-benchmark") : Files.createTempDirectory(parent, "directory-benchmark");
+            try {
+                createFiles(dir, count);
+                measure(count, "listFiles + regex sort", () -> {
+                    if (legacyScan(dir).length != count) {
+                        throw new IllegalStateException("Files missing from listing");
+                    }
+                });
+                measure(count, "InputIndex, first scan", () -> {
+                    InputIndex index = new InputIndex(dir);
+                    index.scan(name -> false);
+                    if (index.takeAll().size() != count) {
+                        throw new IllegalStateException("Files missing from index");
+                    }
+                });
+
+                // All files processed: the steady state of a folder where nothing is archived
+                Set<String> known = new HashSet<>();
+                InputIndex.list(dir).forEach(file -> known.add(file.getFileName().toString()));
+                InputIndex index = new InputIndex(dir);
+                measure(count, "InputIndex, nothing new", () -> index.scan(known::contains));
+                measureTimed(count, "InputIndex, " + NEW_FILES + " new", () -> {
+                    for (int i = 0; i < NEW_FILES; i++) {
+                        Files.createFile(dir.resolve("dataset_part_" + (count + 1 + i) + ".csv"));
+                    }
+                    long start = System.nanoTime();
+                    index.scan(known::contains);
+                    List<Path> added = index.takeAll();
+                    long elapsed = System.nanoTime() - start;
+                    for (Path file : added) {
+                        Files.delete(file);
+                    }
+                    if (added.size() != NEW_FILES) {
+                        throw new IllegalStateException("New files missing from index");
+                    }
+                    return elapsed;
+                });
+            } finally {
+                deleteFolder(dir);
+            }
+        }
+    }
+
+    private interface Scan {
+        void run() throws IOException;
+    }
+
+    private interface TimedScan {
+        long run() throws IOException;
+    }
+
+    private static void measure(int count, String name, Scan scan) throws IOException {
+        measureTimed(count, name, () -> {
+            long start = System.nanoTime();
+            scan.run();
+            return System.nanoTime() - start;
+        });
+    }
+
+    /**
+     * Prints the best time of a few runs and the heap allocated by that run.
+     */
+    private static void measureTimed(int count, String name, TimedScan scan) throws IOException {
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long nanos = scan.run();
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                bestBytes = bytes;
+            }
+        }
+        System.out.printf("%,9d %-26s %,10.1f %,12.1f%n", count, name, bestNanos / 1e6, bestBytes / (1024.0 * 1024.0));
+    }
+
+    private static void createFiles(Path dir, int count) throws IOException {
+        List<Integer> numbers = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            numbers.add(i);
+        }
+        Collections.shuffle(numbers, new Random(25));
+        for (int number : numbers) {
+            Files.createFile(dir.resolve("dataset_part_" + number + ".csv"));
+        }
+    }
+
+    /**
+     * The listing and sort FileMerger did on every scan before it had an index.
+     */
+    private static File[] legacyScan(Path dir) {
+        File[] files = dir.toFile().listFiles((folder, name) -> name.endsWith(".csv"));
+        Arrays.sort(files, (f1, f2) -> Integer.compare(legacyNumber(f1.getName()), legacyNumber(f2.getName())));
+        return files;
+    }
+
+    private static int legacyNumber(String fileName) {
+        String num = fileName.replaceAll("\\D+", "");
+        return num.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(num);
+    }
+
+    private static void deleteFolder(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path file : stream) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,114 @@
+package iapi.benchmark;
+
+import iapi.convert_data.DataValidator;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the original replace/split implementation of DataValidator.parseArray with the
+ * single-pass parsers. Reports time and heap allocation per parsed array.
+ *
+ * Run from the test classes (see the package documentation) with: iapi.benchmark.ParseArrayBenchmark
+ * [--arrays=N] [--rounds=N].
+ */
+public class ParseArrayBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        int arrays = 20_000;
+        int rounds = 20;
+        for (String arg : args) {
+            if (arg.startsWith("--arrays=")) {
+                arrays = Integer.parseInt(arg.substring("--arrays=".length()));
+            } else if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            }
+        }
+
+        SampleData sampleData = new SampleData(1);
+        String[] strings = new String[arrays];
+        byte[][] bytes = new byte[arrays][];
+        for (int i = 0; i < arrays; i++) {
+            strings[i] = sampleData.vector(6, 10.0);
+            bytes[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        double[] dest = new double[16];
+
+        System.out.printf("Parsing %d six-element arrays, %d rounds (first half is warm-up)%n", arrays, rounds);
+        System.out.printf("%-34s %12s %14s%n", "Method", "ns/array", "bytes/array");
+
+        report("legacy replace/split (String)", rounds, arrays, () -> {
+            double total = 0;
+            for (String s : strings) {
+                total += legacyParseArray(s).get(0);
+            }
+            return total;
+        });
+        report("single-pass parseArray(String)", rounds, arrays, () -> {
+            double total = 0;
+            for (String s : strings) {
+                total += DataValidator.parseArray(s).get(0);
+            }
+            return total;
+        });
+        report("single-pass bytes -> List<Double>", rounds, arrays, () -> {
+            double total = 0;
+            for (byte[] b : bytes) {
+                total += DataValidator.parseArray(b, 0, b.length).get(0);
+            }
+            return total;
+        });
+        report("single-pass bytes -> double[]", rounds, arrays, () -> {
+            double total = 0;
+            for (byte[] b : bytes) {
+                DataValidator.parseArray(b, 0, b.length, dest, 0);
+                total += dest[0];
+            }
+            return total;
+        });
+    }
+
+    private interface Round {
+        double run();
+    }
+
+    private static void report(String name, int rounds, int arrays, Round round) {
+        int warmup = rounds / 2;
+        for (int i = 0; i < warmup; i++) {
+            sink = round.run();
+        }
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int measured = rounds - warmup;
+        for (int i = 0; i < measured; i++) {
+            sink = round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long operations = (long) measured * arrays;
+        System.out.printf("%-34s %12.1f %14.1f%n", name, (double) elapsed / operations, (double) allocated / operations);
+    }
+
+    /**
+     * The implementation DataValidator.parseArray used before the single-pass parser.
+     */
+    private static List<Double> legacyParseArray(String value) {
+        value = value.replace("[", "").replace("]", "");
+        String[] parts = value.split(",");
+        List<Double> result = new ArrayList<>();
+        for (String part : parts) {
+            if (!part.trim().isEmpty()) {
+                result.add(Double.parseDouble(part.trim()));
+            }
+        }
+        return result;
+    }
+}
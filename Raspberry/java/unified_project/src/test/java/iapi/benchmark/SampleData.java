@@ -0,0 +1,94 @@
+package iapi.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic 20 Hz robot CSV chunks in the same layout that ChunkProcessor writes
+ * (every field quoted, vectors as bracketed lists), for benchmarks that have no real dataset at hand.
+ */
+public class SampleData {
+
+    public static final String[] HEADER = {
+            "ID", "Timestamp", "Actual Joint Positions", "Actual Joint Velocities", "Actual Joint Currents",
+            "Actual Cartesian Coordinates", "Actual Tool Speed", "Generalized Forces", "Temperature of Each Joint",
+            "Execution Time", "Safety Status", "Tool Acceleration", "Norm of Cartesian Linear Momentum",
+            "Robot Current", "Joint Voltages", "Elbow Position", "Elbow Velocity", "Tool Current",
+            "Tool Temperature", "TCP Force", "Anomaly State"
+    };
+
+    private static final double SAMPLE_INTERVAL_SECONDS = 0.05;
+
+    private final Random random;
+
+    public SampleData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Writes a CSV chunk with {@code rows} samples for one robot, starting at {@code startTimestamp} (epoch seconds).
+     */
+    public void writeCsv(Path file, int rows, int robotId, double startTimestamp) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            writer.write(quoted(String.join("\",\"", HEADER)));
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                writer.write(row(robotId, startTimestamp + i * SAMPLE_INTERVAL_SECONDS));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Returns one CSV row without the line break.
+     */
+    public String row(int robotId, double timestamp) {
+        String[] fields = {
+                Integer.toString(robotId),
+                Double.toString(timestamp),
+                vector(6, Math.PI),
+                vector(6, 1.0),
+                vector(6, 2.0),
+                vector(6, 0.8),
+                vector(6, 0.5),
+                vector(6, 20.0),
+                vector(6, 40.0),
+                Double.toString(random.nextDouble() * 0.008),
+                Integer.toString(1),
+                vector(3, 5.0),
+                Double.toString(random.nextDouble() * 3.0),
+                Double.toString(random.nextDouble() * 2.0),
+                vector(6, 48.0),
+                vector(3, 0.8),
+                vector(3, 0.5),
+                Double.toString(random.nextDouble() * 0.2),
+                Double.toString(35 + random.nextDouble() * 5),
+                Double.toString(random.nextDouble() * 50.0),
+                Integer.toString(random.nextInt(100) == 0 ? 1 : 0)
+        };
+        return quoted(String.join("\",\"", fields));
+    }
+
+    /**
+     * Returns a bracketed vector such as {@code [0.12, -1.5, ...]} with full double precision.
+     */
+    public String vector(int width, double scale) {
+        StringBuilder builder = new StringBuilder(width * 22);
+        builder.append('[');
+        for (int i = 0; i < width; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append((random.nextDouble() * 2 - 1) * scale);
+        }
+        return builder.append(']').toString();
+    }
+
+    private static String quoted(String value) {
+        return "\"" + value + "\"";
+    }
+}
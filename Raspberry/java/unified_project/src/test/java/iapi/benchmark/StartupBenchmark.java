@@ -0,0 +1,151 @@
+package iapi.benchmark;
+
+import iapi.convert_data.HadoopConfig;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.merge_data.FileMerger;
+import org.apache.parquet.conf.HadoopParquetConfiguration;
+import org.apache.parquet.conf.ParquetConfiguration;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Compares cold start and resident memory of the NIO and Hadoop output paths. Each run is a fresh
+ * JVM that converts one small CSV chunk with {@link FileMerger} and reports the time from JVM start
+ * until the Parquet file is closed, the resident set size (current and peak, from /proc), the
+ * number of loaded classes and how many of them are Hadoop classes.
+ *
+ * Run from the test classes (see the package documentation) with: iapi.benchmark.StartupBenchmark
+ * [--runs=N] [--rows=N].
+ */
+public class StartupBenchmark {
+
+    private static final String PROBE_PREFIX = "PROBE ";
+
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        int rows = 1200;
+        String probe = null;
+        for (String arg : args) {
+            if (arg.startsWith("--runs=")) {
+                runs = Integer.parseInt(arg.substring("--runs=".length()));
+            } else if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(arg.substring("--rows=".length()));
+            } else if (arg.startsWith("--probe=")) {
+                probe = arg.substring("--probe=".length());
+            }
+        }
+        if (probe != null) {
+            probe(probe.equals("hadoop"), rows);
+        } else {
+            run(runs, rows);
+        }
+    }
+
+    public static void run(int runs, int rows) throws IOException, InterruptedException {
+        List<String> results = new ArrayList<>();
+        for (String io : new String[]{"nio", "hadoop"}) {
+            long[][] samples = new long[5][runs];
+            for (int i = 0; i < runs; i++) {
+                long[] sample = launchProbe(io, rows);
+                for (int metric = 0; metric < sample.length; metric++) {
+                    samples[metric][i] = sample[metric];
+                }
+            }
+            results.add(String.format("%-7s %12d %10d %10d %10d %14d", io, median(samples[0]), median(samples[1]) / 1024,
+                    median(samples[2]) / 1024, median(samples[3]), median(samples[4])));
+        }
+
+        System.out.printf("%nMedian of %d runs, %d rows each%n", runs, rows);
+        System.out.printf("%-7s %12s %10s %10s %10s %14s%n", "I/O", "ready ms", "RSS MB", "peak MB", "classes", "Hadoop classes");
+        results.forEach(System.out::println);
+    }
+
+    /**
+     * Runs one probe in a new JVM with the same class path and heap limit.
+     *
+     * @return Ready time in ms, RSS and peak RSS in KB, loaded classes, loaded Hadoop classes.
+     */
+    private static long[] launchProbe(String io, int rows) throws IOException, InterruptedException {
+        Path classLog = Files.createTempFile("startup-classes", ".log");
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + Runtime.getRuntime().maxMemory() / (1024 * 1024) + "m",
+                "-Xlog:class+load=info:file=" + classLog,
+                "-cp", System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), "--probe=" + io, "--rows=" + rows));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        long[] sample = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith(PROBE_PREFIX)) {
+                    sample = Arrays.stream(line.substring(PROBE_PREFIX.length()).split(" ")).mapToLong(Long::parseLong).toArray();
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        long hadoopClasses;
+        try (Stream<String> lines = Files.lines(classLog)) {
+            hadoopClasses = lines.filter(line -> line.contains(" org.apache.hadoop.")).count();
+        }
+        Files.delete(classLog);
+        if (exitCode != 0 || sample == null) {
+            throw new IOException("Probe for " + io + " failed with exit code " + exitCode);
+        }
+        return new long[]{sample[0], sample[1], sample[2], sample[3], hadoopClasses};
+    }
+
+    /**
+     * Converts one CSV chunk the way Main does and prints the measurements on a single line.
+     */
+    private static void probe(boolean hadoopFileSystem, int rows) throws IOException {
+        Path root = Files.createTempDirectory("startup-probe");
+        Path input = Files.createDirectory(root.resolve("input"));
+        new SampleData(7).writeCsv(input.resolve("chunk.csv"), rows, 1, 1700000000.0);
+
+        ParquetConfiguration conf = hadoopFileSystem
+                ? new HadoopParquetConfiguration(HadoopConfig.getHadoopConfiguration())
+                : new PlainParquetConfiguration();
+        FileMerger merger = new FileMerger(input.toString(), root.resolve("output").toString(), conf,
+                new ParquetWriterOptions().withHadoopFileSystem(hadoopFileSystem));
+        merger.mergeFilesConcurrently();
+        merger.stop();
+        long readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        System.out.println(PROBE_PREFIX + readyMillis + " " + procStatusKb("VmRSS") + " " + procStatusKb("VmHWM") + " "
+                + ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+    }
+
+    /**
+     * Reads a memory figure in KB from /proc/self/status, or -1 where there is no /proc (not Linux).
+     */
+    private static long procStatusKb(String key) throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith(key + ":")) {
+                return Long.parseLong(line.substring(key.length() + 1).replace("kB", "").trim());
+            }
+        }
+        return -1;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
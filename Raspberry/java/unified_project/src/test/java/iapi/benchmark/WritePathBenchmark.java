@@ -0,0 +1,105 @@
+package iapi.benchmark;
+
+import iapi.convert_data.NioOutputFile;
+import iapi.convert_data.ParquetProfile;
+import iapi.convert_data.ParquetWriterOptions;
+import iapi.convert_data.RobotDataBatch;
+import iapi.convert_data.RobotDataFileWriter;
+import iapi.convert_data.WriterMemoryManager;
+import org.apache.parquet.conf.PlainParquetConfiguration;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compares writing rows through the RobotData Avro view and AvroWriteSupport with writing them
+ * straight from the batch's primitives through RobotDataWriteSupport. Both write the same sample
+ * to an uncompressed file on the calling thread, so the difference is the record-to-column path;
+ * reports rows per second and heap allocation per row, and checks the files are identical.
+ *
+ * Run from the test classes (see the package documentation) with: iapi.benchmark.WritePathBenchmark
+ * [--input=folder] [--rows=N] [--rounds=N].
+ */
+public class WritePathBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        String input = null;
+        int rows = 100_000;
+        int rounds = 10;
+        for (String arg : args) {
+            if (arg.startsWith("--input=")) {
+                input = arg.substring("--input=".length());
+            } else if (arg.startsWith("--rows=")) {
+                rows = Integer.parseInt(arg.substring("--rows=".length()));
+            } else if (arg.startsWith("--rounds=")) {
+                rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            }
+        }
+        run(input, rows, rounds);
+    }
+
+    public static void run(String inputFolder, int rows, int rounds) throws IOException {
+        List<RobotDataBatch> sample = CodecBenchmark.loadSample(inputFolder, rows, false);
+        long sampleRows = sample.stream().mapToLong(RobotDataBatch::size).sum();
+        Path dir = Files.createTempDirectory("write-path-benchmark");
+        Path avroFile = dir.resolve("avro.parquet");
+        Path directFile = dir.resolve("direct.parquet");
+
+        System.out.printf("Writing %d rows, %d rounds per path (first half is warm-up), alternating paths%n", sampleRows, rounds);
+        long[] avro = new long[2];
+        long[] direct = new long[2];
+        int warmup = rounds / 2;
+        for (int round = 0; round < rounds; round++) {
+            long[] avroRound = write(sample, avroFile, true);
+            long[] directRound = write(sample, directFile, false);
+            if (round >= warmup) {
+                for (int i = 0; i < 2; i++) {
+                    avro[i] += avroRound[i];
+                    direct[i] += directRound[i];
+                }
+            }
+        }
+        boolean identical = Files.mismatch(avroFile, directFile) == -1;
+        long fileSize = Files.size(directFile);
+        Files.delete(avroFile);
+        Files.delete(directFile);
+        Files.delete(dir);
+
+        long measuredRows = sampleRows * (rounds - warmup);
+        System.out.printf("%-28s %14s %14s%n", "Path", "rows/s", "bytes/row");
+        System.out.printf("%-28s %,14.0f %14.1f%n", "Avro view + AvroWriteSupport", measuredRows * 1e9 / avro[0], (double) avro[1] / measuredRows);
+        System.out.printf("%-28s %,14.0f %14.1f%n", "RobotDataWriteSupport", measuredRows * 1e9 / direct[0], (double) direct[1] / measuredRows);
+        System.out.printf("Speed-up: %.2fx; files identical: %b (%d bytes)%n", (double) avro[0] / direct[0], identical, fileSize);
+    }
+
+    /**
+     * @return Elapsed nanoseconds and bytes allocated by this thread.
+     */
+    private static long[] write(List<RobotDataBatch> sample, Path file, boolean avroPath) throws IOException {
+        ParquetWriterOptions options = new ParquetWriterOptions().withProfile(ParquetProfile.UNCOMPRESSED);
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        try (RobotDataFileWriter writer = new RobotDataFileWriter(new NioOutputFile(file), new PlainParquetConfiguration(),
+                options, new WriterMemoryManager(options))) {
+            for (RobotDataBatch batch : sample) {
+                RobotDataBatch.Cursor cursor = batch.cursor();
+                for (int row = 0; row < batch.size(); row++) {
+                    if (avroPath) {
+                        writer.write(cursor.moveTo(row).asRecord());
+                    } else {
+                        writer.write(cursor.moveTo(row));
+                    }
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[]{elapsed, THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore};
+    }
+}
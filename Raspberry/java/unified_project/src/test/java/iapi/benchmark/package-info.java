@@ -0,0 +1,10 @@
+/**
+ * Benchmarks and the sample data they share with the tests. They are compiled with the tests, so
+ * they are not part of the application jar. Each has a main method; run one from the test classes:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/classes:target/test-classes:$(cat target/classpath.txt) iapi.benchmark.CodecBenchmark
+ * </pre>
+ */
+package iapi.benchmark;
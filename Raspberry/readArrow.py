@@ -0,0 +1,33 @@
+import pyarrow as pa
+import socket
+import sys
+
+def read_arrow_file(file_name):
+    """Memory-map an Arrow IPC file and return it as a DataFrame."""
+    with pa.memory_map(file_name) as source:
+        table = pa.ipc.open_file(source).read_all()
+    return table.to_pandas()
+
+def read_arrow_stream(socket_path):
+    """Print the batches streamed on the unified_project Arrow socket (--arrow-socket) until it closes."""
+    with socket.socket(socket.AF_UNIX, socket.SOCK_STREAM) as sock:
+        sock.connect(socket_path)
+        with sock.makefile("rb") as source:
+            for batch in pa.ipc.open_stream(source):
+                print(batch.to_pandas())
+
+if __name__ == "__main__":
+    # Check if a file or socket path has been provided
+    if len(sys.argv) != 2:
+        print("Usage: python3 readArrow.py path/to/file.arrow|path/to/socket")
+        sys.exit(1)
+
+    path = sys.argv[1]  # Get the path from command-line arguments
+    try:
+        if path.endswith(".arrow"):
+            # Display the DataFrame
+            print(read_arrow_file(path))
+        else:
+            read_arrow_stream(path)
+    except Exception as e:
+        print(f"Error reading {path}: {e}")